@@ -1,6 +1,9 @@
 package com.example.musicplayer.config;
 
 import com.example.musicplayer.listener.OnlineCountListener;
+import com.example.musicplayer.listener.SongCacheInvalidationListener;
+import com.example.musicplayer.service.SongListLocalCache;
+import com.example.musicplayer.service.VoteCountBroadcaster;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.data.redis.connection.RedisConnectionFactory;
@@ -13,11 +16,14 @@ public class RedisPubSubConfig {
     @Bean
     public RedisMessageListenerContainer redisContainer(
             RedisConnectionFactory connectionFactory,
-            OnlineCountListener listener) {
+            OnlineCountListener listener,
+            SongCacheInvalidationListener songCacheListener) {
 
         RedisMessageListenerContainer container = new RedisMessageListenerContainer();
         container.setConnectionFactory(connectionFactory);
         container.addMessageListener(listener, new ChannelTopic("online-count-channel"));
+        container.addMessageListener(listener, new ChannelTopic(VoteCountBroadcaster.CHANNEL));
+        container.addMessageListener(songCacheListener, new ChannelTopic(SongListLocalCache.INVALIDATION_CHANNEL));
         return container;
     }
-}
\ No newline at end of file
+}
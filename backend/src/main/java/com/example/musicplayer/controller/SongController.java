@@ -1,18 +1,33 @@
 package com.example.musicplayer.controller;
 
 import com.example.musicplayer.dto.FolderSongCount;
+import com.example.musicplayer.dto.SongPage;
+import com.example.musicplayer.dto.TrendingSong;
 import com.example.musicplayer.enums.UserRole;
-import com.example.musicplayer.model.Song;
+import com.example.musicplayer.service.SongListPayloadCache;
 import com.example.musicplayer.service.SongService;
 import com.example.musicplayer.service.CustomUserDetails;
+import com.example.musicplayer.service.ListenerStatsService;
 import com.example.musicplayer.service.VoteService;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpSession;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.annotation.AuthenticationPrincipal;
+import org.springframework.util.DigestUtils;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 @RestController
 @RequestMapping("/api")
@@ -26,18 +41,54 @@ public class SongController {
         this.voteService = voteService;
     }
 
-    // 首页歌曲列表
+    // 首页歌曲列表：懒签名模式 ETag 未变时直接 304；否则返回缓存的序列化结果，支持 gzip 的客户端拿到预压缩字节
     @GetMapping("/public/songs/get")
-    public List<Song> getSongs(@RequestParam String folder,
-                               @AuthenticationPrincipal CustomUserDetails userDetails) {
-        boolean includeDeleted = false;
-        if (userDetails != null && userDetails.isEnabled()) {
-            UserRole role = userDetails.getUser().getRoleEnum();
-            if (role == UserRole.ADMIN || role == UserRole.STATION_MASTER) {
-                includeDeleted = true;
-            }
+    public ResponseEntity<byte[]> getSongs(@RequestParam String folder,
+                                           @RequestParam(defaultValue = "true") boolean withUrl,
+                                           @RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding,
+                                           @AuthenticationPrincipal CustomUserDetails userDetails,
+                                           WebRequest request) {
+        boolean includeDeleted = canSeeDeleted(userDetails);
+        String eTag = songService.getSongsETag(folder, includeDeleted, withUrl);
+        // 带签名 URL 的响应会随签名刷新而变化，歌单版本号不能作为它的强校验器：不下发 ETag，每次返回当前签名
+        if (!withUrl && request.checkNotModified(eTag)) {
+            return null;
+        }
+        SongListPayloadCache.Payload payload = songService.getSongsPayload(folder, includeDeleted, withUrl, eTag);
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_JSON)
+                .cacheControl(CacheControl.noCache())
+                .header(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+        if (acceptsGzip(acceptEncoding)) {
+            // 已带 Content-Encoding 时 server.compression 不会再压缩一次
+            return response.header(HttpHeaders.CONTENT_ENCODING, "gzip").body(payload.gzip());
         }
-        return songService.getSongs(folder, includeDeleted);
+        return response.body(payload.json());
+    }
+
+    // 游标分页的歌曲列表，大歌单无需一次性加载
+    @GetMapping("/public/songs/page")
+    public SongPage getSongPage(@RequestParam String folder,
+                                @RequestParam(required = false) String cursor,
+                                @RequestParam(defaultValue = "50") int size,
+                                @RequestParam(defaultValue = "true") boolean withUrl,
+                                @AuthenticationPrincipal CustomUserDetails userDetails) {
+        return songService.getSongPage(folder, cursor, size, canSeeDeleted(userDetails), withUrl);
+    }
+
+    // 按需签名并 302 到 OSS，配合 withUrl=false 的歌单使用
+    @GetMapping("/public/songs/stream/{songId}")
+    public ResponseEntity<Void> streamSong(@PathVariable Long songId,
+                                           @AuthenticationPrincipal CustomUserDetails userDetails) {
+        String url = songService.getStreamUrl(songId, canSeeDeleted(userDetails));
+        if (url == null) {
+            return ResponseEntity.notFound().build();
+        }
+        // 签名按时间桶复用，短时间内重定向目标不变，允许浏览器缓存
+        return ResponseEntity.status(HttpStatus.FOUND)
+                .location(URI.create(url))
+                .cacheControl(CacheControl.maxAge(Duration.ofMinutes(30)).cachePrivate())
+                .build();
     }
 
     // 删除歌曲（软删除）
@@ -63,14 +114,64 @@ public class SongController {
     }
 
     @GetMapping("/public/songs/folder-counts")
-    public List<FolderSongCount> getFolderCounts() {
-        return songService.getFolderSongCounts();
+    public ResponseEntity<List<FolderSongCount>> getFolderCounts(WebRequest request) {
+        String eTag = songService.getFolderSongCountsETag();
+        if (request.checkNotModified(eTag)) {
+            return null;
+        }
+        return ResponseEntity.ok()
+                .cacheControl(CacheControl.noCache())
+                .body(songService.getFolderSongCounts(eTag));
     }
 
     // 增加播放次数
     @PostMapping("/public/songs/play/{songId}")
-    public void incrementPlayCount(@PathVariable Long songId) {
-        songService.incrementPlayCount(songId);
+    public void incrementPlayCount(@PathVariable Long songId,
+                                   @AuthenticationPrincipal CustomUserDetails userDetails,
+                                   HttpServletRequest request) {
+        String listenerId = userDetails != null && userDetails.isEnabled()
+                ? "u:" + userDetails.getUser().getId()
+                : anonymousListenerId(request);
+        songService.incrementPlayCount(songId, listenerId);
+    }
+
+    // 已有会话时用会话 id；不为匿名播放新建会话，无 Cookie 的客户端改用 IP + UA 指纹，避免每次播放都算一个新听众
+    private static String anonymousListenerId(HttpServletRequest request) {
+        HttpSession session = request.getSession(false);
+        if (session != null) {
+            return "s:" + session.getId();
+        }
+        // X-Real-IP 由 nginx 按连接地址覆盖写入，客户端无法伪造
+        String ip = request.getHeader("X-Real-IP");
+        if (ip == null || ip.isBlank()) {
+            ip = request.getRemoteAddr();
+        }
+        String userAgent = request.getHeader(HttpHeaders.USER_AGENT);
+        return "f:" + DigestUtils.md5DigestAsHex((ip + "|" + userAgent).getBytes(StandardCharsets.UTF_8));
+    }
+
+    // 歌单内"最近热门"排行，分值按播放和投票时间指数衰减
+    @GetMapping("/public/songs/trending")
+    public List<TrendingSong> getTrendingSongs(@RequestParam String folder,
+                                               @RequestParam(defaultValue = "20") int limit) {
+        return songService.getTrendingSongs(folder, Math.clamp(limit, 1, 100));
+    }
+
+    // 独立听众数估算（HyperLogLog），days 为最近几天（含今天），最多 31 天
+    @GetMapping("/public/songs/listeners/{songId}")
+    public Map<String, Object> getSongListeners(@PathVariable Long songId,
+                                                @RequestParam(defaultValue = "1") int days) {
+        int window = Math.clamp(days, 1, ListenerStatsService.MAX_DAYS);
+        return Map.of("songId", songId, "days", window,
+                "uniqueListeners", songService.countSongListeners(songId, window));
+    }
+
+    @GetMapping("/public/songs/listeners/folder/{folder}")
+    public Map<String, Object> getFolderListeners(@PathVariable String folder,
+                                                  @RequestParam(defaultValue = "1") int days) {
+        int window = Math.clamp(days, 1, ListenerStatsService.MAX_DAYS);
+        return Map.of("folder", folder, "days", window,
+                "uniqueListeners", songService.countFolderListeners(folder, window));
     }
 
     // 获取点赞/点踩数
@@ -83,6 +184,18 @@ public class SongController {
         return voteService.counts(songId);
     }
 
+    // 批量获取点赞/点踩数，ids 以逗号分隔，去重后单次最多 200 首；登录用户额外返回自己的投票
+    @GetMapping("/public/songs/votes")
+    public ResponseEntity<?> getVotesBatch(@RequestParam List<Long> ids,
+                                           @AuthenticationPrincipal CustomUserDetails userDetails) {
+        Set<Long> uniqueIds = new LinkedHashSet<>(ids);
+        if (uniqueIds.size() > VoteService.MAX_BATCH_SONGS) {
+            return ResponseEntity.badRequest().body(Map.of("message", "单次最多查询 " + VoteService.MAX_BATCH_SONGS + " 首歌曲"));
+        }
+        Long userId = userDetails != null && userDetails.isEnabled() ? userDetails.getUser().getId() : null;
+        return ResponseEntity.ok(voteService.countsBatch(uniqueIds, userId));
+    }
+
     // 点赞
     @PostMapping("/songs/like/{songId}")
     public Map<String, Integer> likeSong(@PathVariable Long songId,
@@ -107,6 +220,28 @@ public class SongController {
         return voteService.cancel(songId, userId);
     }
 
+    private boolean canSeeDeleted(CustomUserDetails userDetails) {
+        if (userDetails != null && userDetails.isEnabled()) {
+            UserRole role = userDetails.getUser().getRoleEnum();
+            return role == UserRole.ADMIN || role == UserRole.STATION_MASTER;
+        }
+        return false;
+    }
+
+    private boolean acceptsGzip(String acceptEncoding) {
+        if (acceptEncoding == null) {
+            return false;
+        }
+        for (String token : acceptEncoding.split(",")) {
+            String[] parts = token.trim().split(";");
+            String coding = parts[0].trim();
+            if (coding.equalsIgnoreCase("gzip") || coding.equals("*")) {
+                return parts.length < 2 || !parts[1].replace(" ", "").matches("q=0(\\.0*)?");
+            }
+        }
+        return false;
+    }
+
     private Long currentUserId(CustomUserDetails userDetails) {
         if (userDetails != null && userDetails.isEnabled()) {
             return userDetails.getUser().getId();
@@ -124,6 +259,53 @@ public class SongController {
         return ResponseEntity.status(HttpStatus.FORBIDDEN).body("Only Station Master can sync database");
     }
 
+    // 歌单缓存命中率等统计 (站长专用)
+    @GetMapping("/admin/songs/cache-stats")
+    public ResponseEntity<?> getCacheStats(@AuthenticationPrincipal CustomUserDetails userDetails) {
+        if (isStationMaster(userDetails)) {
+            return ResponseEntity.ok(songService.getCacheStats());
+        }
+        return ResponseEntity.status(HttpStatus.FORBIDDEN).body("无权操作");
+    }
+
+    // Redis 投票读模型重建进度 (站长专用)
+    @GetMapping("/admin/votes/rebuild-stats")
+    public ResponseEntity<?> getVoteRebuildStats(@AuthenticationPrincipal CustomUserDetails userDetails) {
+        if (isStationMaster(userDetails)) {
+            return ResponseEntity.ok(voteService.rebuildStats());
+        }
+        return ResponseEntity.status(HttpStatus.FORBIDDEN).body("无权操作");
+    }
+
+    // 投票增量对账的检查 / 修复计数与最近一轮结果 (站长专用)
+    @GetMapping("/admin/votes/reconcile-stats")
+    public ResponseEntity<?> getVoteReconcileStats(@AuthenticationPrincipal CustomUserDetails userDetails) {
+        if (isStationMaster(userDetails)) {
+            return ResponseEntity.ok(voteService.reconcileStats());
+        }
+        return ResponseEntity.status(HttpStatus.FORBIDDEN).body("无权操作");
+    }
+
+    // 投票发件箱的即时投影 / 延迟重放计数与积压条数 (站长专用)
+    @GetMapping("/admin/votes/outbox-stats")
+    public ResponseEntity<?> getVoteOutboxStats(@AuthenticationPrincipal CustomUserDetails userDetails) {
+        if (isStationMaster(userDetails)) {
+            return ResponseEntity.ok(voteService.outboxStats());
+        }
+        return ResponseEntity.status(HttpStatus.FORBIDDEN).body("无权操作");
+    }
+
+    // 用指定歌单对比 Redis 歌单缓存的 JSON / 二进制编码体积与耗时 (站长专用)
+    @GetMapping("/admin/songs/cache-codec-benchmark")
+    public ResponseEntity<?> benchmarkCacheCodec(@RequestParam(required = false) String folder,
+                                                 @RequestParam(defaultValue = "50") int rounds,
+                                                 @AuthenticationPrincipal CustomUserDetails userDetails) {
+        if (!isStationMaster(userDetails)) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).body("无权操作");
+        }
+        return ResponseEntity.ok(songService.benchmarkSongListCodec(folder, Math.clamp(rounds, 1, 1000)));
+    }
+
     private boolean isStationMaster(CustomUserDetails userDetails) {
         return userDetails != null
                 && userDetails.isEnabled()
@@ -0,0 +1,11 @@
+package com.example.musicplayer.dto;
+
+import com.example.musicplayer.model.Song;
+
+import java.util.List;
+
+/**
+ * 游标分页结果，nextCursor 为 null 表示已到末尾
+ */
+public record SongPage(List<Song> songs, String nextCursor) {
+}
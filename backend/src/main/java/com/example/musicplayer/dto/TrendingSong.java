@@ -0,0 +1,6 @@
+package com.example.musicplayer.dto;
+
+import com.example.musicplayer.model.Song;
+
+public record TrendingSong(Song song, double score) {
+}
@@ -31,7 +31,8 @@ public class OnlineCountHandler extends TextWebSocketHandler {
 
     // 关键：用 session 属性防止重复计数
     private static final String COUNTED_FLAG = "online_counted";
-    private static final String CURRENT_SONG_ID = "songId";
+    // OnlineCountListener 按该属性把票数推送给正在听同一首歌的会话
+    public static final String CURRENT_SONG_ID = "songId";
 
     @Override
     public void afterConnectionEstablished(WebSocketSession session) throws Exception {
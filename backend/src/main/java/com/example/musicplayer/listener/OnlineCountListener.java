@@ -1,6 +1,11 @@
 package com.example.musicplayer.listener;
 
+import com.example.musicplayer.handler.OnlineCountHandler;
+import com.example.musicplayer.service.VoteCountBroadcaster;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
 import org.springframework.data.redis.connection.Message;
 import org.springframework.data.redis.connection.MessageListener;
 import org.springframework.stereotype.Component;
@@ -8,14 +13,19 @@ import org.springframework.web.socket.TextMessage;
 import org.springframework.web.socket.WebSocketSession;
 
 import java.io.IOException;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 
+@Slf4j
 @Component
 @RequiredArgsConstructor
 public class OnlineCountListener implements MessageListener {
 
     // 每个实例维护自己的 sessions（不共享，不 static）
     private final ConcurrentHashMap<String, WebSocketSession> sessions = new ConcurrentHashMap<>();
+    private final ObjectMapper objectMapper = new ObjectMapper();
 
     // 让 OnlineCountHandler 能把新连接塞进来
     public void addSession(WebSocketSession session) {
@@ -30,16 +40,70 @@ public class OnlineCountListener implements MessageListener {
     public void onMessage(Message message, byte[] pattern) {
         String jsonMessage = new String(message.getBody());
 
-        // 清理失效会话 + 广播
+        // 清理失效会话
         sessions.values().removeIf(s -> !s.isOpen());
 
+        if (VoteCountBroadcaster.CHANNEL.equals(new String(message.getChannel()))) {
+            pushVoteCounts(jsonMessage);
+            return;
+        }
+
+        // 在线人数：广播给所有会话
+        TextMessage textMessage = new TextMessage(jsonMessage);
+        for (WebSocketSession session : sessions.values()) {
+            send(session, textMessage);
+        }
+    }
+
+    /**
+     * 票数变化只推给当前正在听该歌曲的会话
+     *
+     * @param jsonMessage songId -> {likes, dislikes}
+     */
+    private void pushVoteCounts(String jsonMessage) {
+        Map<String, Map<String, Object>> songs;
+        try {
+            songs = objectMapper.readValue(jsonMessage, new TypeReference<>() {
+            });
+        } catch (IOException e) {
+            log.warn("【票数推送】消息解析失败: {}", jsonMessage, e);
+            return;
+        }
+        Map<String, TextMessage> messages = new HashMap<>();
         for (WebSocketSession session : sessions.values()) {
+            String songId = (String) session.getAttributes().get(OnlineCountHandler.CURRENT_SONG_ID);
+            Map<String, Object> counts = songId == null ? null : songs.get(songId);
+            if (counts == null) {
+                continue;
+            }
+            TextMessage textMessage = messages.computeIfAbsent(songId, _ -> voteMessage(songId, counts));
+            if (textMessage != null) {
+                send(session, textMessage);
+            }
+        }
+    }
+
+    private TextMessage voteMessage(String songId, Map<String, Object> counts) {
+        Map<String, Object> data = new LinkedHashMap<>();
+        data.put("type", "song-votes");
+        data.put("songId", Long.valueOf(songId));
+        data.putAll(counts);
+        try {
+            return new TextMessage(objectMapper.writeValueAsString(data));
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    // 监听容器可能并发投递不同频道的消息，同一会话的发送需要串行
+    private static void send(WebSocketSession session, TextMessage message) {
+        synchronized (session) {
             try {
                 if (session.isOpen()) {
-                    session.sendMessage(new TextMessage(jsonMessage));
+                    session.sendMessage(message);
                 }
             } catch (IOException ignored) {
             }
         }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,25 @@
+package com.example.musicplayer.listener;
+
+import com.example.musicplayer.service.SongService;
+import lombok.RequiredArgsConstructor;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+
+@Component
+@RequiredArgsConstructor
+public class SongCacheInvalidationListener implements MessageListener {
+
+    private final SongService songService;
+
+    // 消息体为 folderKey，或 "*" 表示清空全部歌单
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        String folderKey = new String(message.getBody(), StandardCharsets.UTF_8);
+        if (!folderKey.isBlank()) {
+            songService.invalidateLocal(folderKey);
+        }
+    }
+}
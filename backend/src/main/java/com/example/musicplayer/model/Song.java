@@ -1,5 +1,6 @@
 package com.example.musicplayer.model;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
 import jakarta.persistence.*;
 import lombok.Getter;
 import lombok.Setter;
@@ -9,7 +10,9 @@ import org.hibernate.annotations.UpdateTimestamp;
 import java.time.LocalDateTime;
 
 @Entity
-@Table(name = "songs")
+@Table(name = "songs", indexes = {
+        @Index(name = "idx_songs_folder_deleted_id", columnList = "folder_id, is_deleted, id"),
+        @Index(name = "idx_songs_folder_id", columnList = "folder_id, id")})
 @Getter
 @Setter
 public class Song {
@@ -21,11 +24,15 @@ public class Song {
     private String name;
 
     @Transient // 这个注解表示该字段不持久化到数据库
+    @JsonInclude(JsonInclude.Include.NON_NULL) // 懒签名模式下不输出
     private String url; // presigned or public URL
 
     @Column(name = "object_key", length = 255)
     private String key; // storage key in OSS
 
+    @Column(name = "folder_id")
+    private Long folderId; // song_folders.id，OSS 同步时回填
+
     @Column(name = "like_count", nullable = false)
     private Integer likeCount = 0;
 
@@ -0,0 +1,39 @@
+package com.example.musicplayer.model;
+
+import jakarta.persistence.*;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+import org.hibernate.annotations.CreationTimestamp;
+
+import java.time.LocalDateTime;
+
+@Entity
+@Table(name = "song_folders", uniqueConstraints = @UniqueConstraint(name = "uk_song_folders_key", columnNames = "folder_key"))
+@Getter
+@Setter
+@NoArgsConstructor
+public class SongFolder {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "folder_key", nullable = false, length = 64)
+    private String folderKey; // 前端使用的歌单标识，如 ha_ji_mi
+
+    @Column(name = "display_name", nullable = false, length = 255)
+    private String displayName; // OSS 目录名，对应 music/<displayName>/
+
+    @CreationTimestamp
+    @Column(name = "created_at", updatable = false)
+    private LocalDateTime createdAt;
+
+    public SongFolder(String folderKey, String displayName) {
+        this.folderKey = folderKey;
+        this.displayName = displayName;
+    }
+
+    public String getOssPrefix() {
+        return "music/" + displayName + "/";
+    }
+}
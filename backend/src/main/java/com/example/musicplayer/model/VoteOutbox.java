@@ -0,0 +1,37 @@
+package com.example.musicplayer.model;
+
+import jakarta.persistence.*;
+import lombok.Getter;
+import lombok.Setter;
+import org.hibernate.annotations.CreationTimestamp;
+
+import java.time.LocalDateTime;
+
+/**
+ * 待投影到 Redis 的投票变更，与 song_votes 在同一事务中写入
+ */
+@Entity
+@Table(name = "vote_outbox")
+@Getter
+@Setter
+public class VoteOutbox {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "song_id", nullable = false)
+    private Long songId;
+
+    @Column(name = "user_id", nullable = false)
+    private Long userId;
+
+    @Column(name = "vote")
+    private Integer vote; // 1 like, -1 dislike, null 取消
+
+    @Column(name = "previous_vote")
+    private Integer previousVote;
+
+    @CreationTimestamp
+    @Column(name = "created_at", nullable = false, updatable = false)
+    private LocalDateTime createdAt;
+}
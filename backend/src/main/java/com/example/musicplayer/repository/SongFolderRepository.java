@@ -0,0 +1,7 @@
+package com.example.musicplayer.repository;
+
+import com.example.musicplayer.model.SongFolder;
+import org.springframework.data.jpa.repository.JpaRepository;
+
+public interface SongFolderRepository extends JpaRepository<SongFolder, Long> {
+}
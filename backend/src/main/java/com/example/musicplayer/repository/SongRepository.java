@@ -1,6 +1,7 @@
 package com.example.musicplayer.repository;
 
 import com.example.musicplayer.model.Song;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
@@ -8,18 +9,46 @@ import org.springframework.data.repository.query.Param;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.util.List;
+import java.util.Optional;
 
 public interface SongRepository extends JpaRepository<Song, Long> {
 
-    @Modifying
-    @Transactional
-    @Query("UPDATE Song s SET s.playCount = s.playCount + 1 WHERE s.id = :id")
-    void incrementPlayCount(@Param("id") Long id);
+    // 以下查询均走 (folder_id, is_deleted, id) / (folder_id, id) 索引的等值查找
+    List<Song> findByFolderIdOrderById(Long folderId);
+
+    List<Song> findByFolderIdAndIsDeletedOrderById(Long folderId, Integer isDeleted);
+
+    // 一次查询得到所有歌单的有效歌曲数：[folderId, count]
+    @Query("SELECT s.folderId, COUNT(s) FROM Song s WHERE s.isDeleted = 0 AND s.folderId IS NOT NULL GROUP BY s.folderId")
+    List<Object[]> countActiveSongsGroupByFolder();
+
+    // 投票读模型重建用：[songId, folderId]
+    @Query("SELECT s.id, s.folderId FROM Song s WHERE s.folderId IS NOT NULL")
+    List<Object[]> findAllSongFolderIds();
 
-    @Query("SELECT s FROM Song s WHERE s.key LIKE :prefix%")
-    List<Song> findByKeyStartingWith(@Param("prefix") String prefix);
+    // 投票对账按主键分批轮转扫描全部歌曲
+    @Query("SELECT s.id FROM Song s WHERE s.id > :afterId ORDER BY s.id")
+    List<Long> findIdsAfter(@Param("afterId") long afterId, Pageable pageable);
 
-    @Query("SELECT COUNT(s) FROM Song s WHERE s.isDeleted = 0 AND s.key LIKE CONCAT(:prefix, '%')")
-    long countActiveSongsByPrefix(@Param("prefix") String prefix);
+    // 歌曲存在性位图（SongIdIndex）用：只取主键，不加载实体
+    @Query("SELECT s.id FROM Song s WHERE s.isDeleted = 0 ORDER BY s.id")
+    List<Long> findActiveIds();
+
+    @Query("SELECT s.isDeleted FROM Song s WHERE s.id = :id")
+    Optional<Integer> findDeletedFlagById(@Param("id") Long id);
+
+    // 按主键顺序扫描，取够 pageable 条即停止，不会物化整个歌单
+    @Query("SELECT s FROM Song s WHERE s.folderId = :folderId AND s.id > :afterId "
+            + "AND (:includeDeleted = true OR s.isDeleted = 0) ORDER BY s.id")
+    List<Song> findPageByFolderAfterId(@Param("folderId") Long folderId,
+                                       @Param("afterId") long afterId,
+                                       @Param("includeDeleted") boolean includeDeleted,
+                                       Pageable pageable);
+
+    // 仅供 OSS 同步回填 folder_id 使用
+    @Modifying
+    @Transactional
+    @Query("UPDATE Song s SET s.folderId = :folderId WHERE s.folderId IS NULL AND s.key LIKE CONCAT(:prefix, '%')")
+    int assignFolderByPrefix(@Param("folderId") Long folderId, @Param("prefix") String prefix);
 }
 
@@ -1,11 +1,42 @@
 package com.example.musicplayer.repository;
 
 import com.example.musicplayer.model.SongVote;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 
 public interface SongVoteRepository extends JpaRepository<SongVote, Long> {
     Optional<SongVote> findByUserIdAndSongId(Long userId, Long songId);
+
+    // 批量查询当前用户对多首歌的投票：[songId, vote]，走 (user_id, song_id) 唯一索引
+    @Query("SELECT v.songId, v.vote FROM SongVote v WHERE v.userId = :userId AND v.songId IN :songIds")
+    List<Object[]> findUserVotes(@Param("userId") Long userId, @Param("songIds") Collection<Long> songIds);
+
+    // 读模型重建用：按主键游标分批读取 [id, songId, userId, vote]，不构造实体
+    @Query("SELECT v.id, v.songId, v.userId, v.vote FROM SongVote v WHERE v.id > :afterId ORDER BY v.id")
+    List<Object[]> findVoteTuplesAfter(@Param("afterId") long afterId, Pageable pageable);
+
+    // 重建期间被改动过的歌曲单独重读：[userId, vote]
+    @Query("SELECT v.userId, v.vote FROM SongVote v WHERE v.songId = :songId")
+    List<Object[]> findVoteTuplesBySongId(@Param("songId") Long songId);
+
+    // 重建期间投过票的用户单独重读其投票索引：[songId, vote]
+    @Query("SELECT v.songId, v.vote FROM SongVote v WHERE v.userId = :userId")
+    List<Object[]> findVoteTuplesByUserId(@Param("userId") Long userId);
+
+    // 对账用：[songId, vote, count, SUM(CRC32(user_id))]，走 (song_id, vote, user_id) 覆盖索引
+    @Query(value = "SELECT song_id, vote, COUNT(*), SUM(CRC32(user_id)) FROM song_votes "
+            + "WHERE song_id IN (:songIds) GROUP BY song_id, vote", nativeQuery = true)
+    List<Object[]> aggregateDigests(@Param("songIds") Collection<Long> songIds);
+
+    // 对账优先检查上次运行后有投票变更的歌曲，走 (updated_at, song_id) 索引
+    @Query("SELECT DISTINCT v.songId FROM SongVote v WHERE v.updatedAt > :since")
+    List<Long> findSongIdsUpdatedSince(@Param("since") LocalDateTime since, Pageable pageable);
 }
 
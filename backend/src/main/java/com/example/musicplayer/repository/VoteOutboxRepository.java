@@ -0,0 +1,25 @@
+package com.example.musicplayer.repository;
+
+import com.example.musicplayer.model.VoteOutbox;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+public interface VoteOutboxRepository extends JpaRepository<VoteOutbox, Long> {
+
+    // 只取创建早于 before 的条目，给提交后的即时投影留出时间，避免同一条目被重复投影
+    @Query("SELECT o FROM VoteOutbox o WHERE o.createdAt < :before ORDER BY o.id")
+    List<VoteOutbox> findPendingBefore(@Param("before") LocalDateTime before, Pageable pageable);
+
+    // 投影写入的是绝对状态，同一用户对同一首歌更早的条目随之失效
+    @Modifying
+    @Transactional
+    @Query("DELETE FROM VoteOutbox o WHERE o.userId = :userId AND o.songId = :songId AND o.id <= :id")
+    int deleteUpTo(@Param("userId") Long userId, @Param("songId") Long songId, @Param("id") Long id);
+}
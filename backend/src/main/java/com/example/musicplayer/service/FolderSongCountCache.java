@@ -0,0 +1,93 @@
+package com.example.musicplayer.service;
+
+import com.example.musicplayer.dto.FolderSongCount;
+import com.example.musicplayer.model.SongFolder;
+import com.example.musicplayer.repository.SongRepository;
+import lombok.RequiredArgsConstructor;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.stereotype.Service;
+
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 物化的各歌单有效歌曲数。
+ * Redis Hash {@link #COUNTS_KEY} 由一次 GROUP BY 查询初始化，之后在同步、删除、恢复时原地增减；
+ * 本实例再按文件夹统计的版本号缓存一份结果，版本不变时不访问 Redis 和数据库。
+ */
+@Service
+@RequiredArgsConstructor
+public class FolderSongCountCache {
+
+    private static final String COUNTS_KEY = "songs:folder-counts";
+    // 兜底过期时间：初始化与并发增减之间的极小窗口可能造成偏差，定期重建自愈
+    private static final long COUNTS_TTL_HOURS = 6;
+
+    // Hash 不存在时不做增减，交给下一次初始化
+    private static final DefaultRedisScript<Long> ADJUST_SCRIPT = new DefaultRedisScript<>(
+            "if redis.call('exists', KEYS[1]) == 1 then " +
+                    "return redis.call('hincrby', KEYS[1], ARGV[1], ARGV[2]) end; return 0",
+            Long.class);
+
+    private final SongRepository songRepository;
+    private final SongFolderRegistry folderRegistry;
+    private final StringRedisTemplate redisTemplate;
+
+    private volatile Snapshot snapshot;
+
+    /**
+     * @param catalogTag 当前文件夹统计版本（{@link FolderVersionService#catalogTag()}）
+     */
+    public List<FolderSongCount> getCounts(String catalogTag) {
+        Snapshot current = snapshot;
+        if (current != null && current.tag().equals(catalogTag)) {
+            return current.counts();
+        }
+        Map<Object, Object> stored = redisTemplate.opsForHash().entries(COUNTS_KEY);
+        if (stored.isEmpty()) {
+            stored = new HashMap<>(seed());
+        }
+        List<FolderSongCount> counts = new ArrayList<>();
+        for (SongFolder folder : folderRegistry.all()) {
+            Object value = stored.get(folder.getFolderKey());
+            long count = value == null ? 0L : Long.parseLong(value.toString());
+            counts.add(new FolderSongCount(folder.getFolderKey(), folder.getDisplayName(), count));
+        }
+        List<FolderSongCount> result = List.copyOf(counts);
+        snapshot = new Snapshot(catalogTag, result);
+        return result;
+    }
+
+    public void adjust(String folderKey, long delta) {
+        if (folderKey == null || delta == 0) {
+            return;
+        }
+        redisTemplate.execute(ADJUST_SCRIPT, Collections.singletonList(COUNTS_KEY), folderKey, Long.toString(delta));
+    }
+
+    /**
+     * 用一次分组查询重新计算全部歌单的歌曲数
+     */
+    public Map<String, String> seed() {
+        Map<String, String> counts = new HashMap<>();
+        for (SongFolder folder : folderRegistry.all()) {
+            counts.put(folder.getFolderKey(), "0");
+        }
+        for (Object[] row : songRepository.countActiveSongsGroupByFolder()) {
+            SongFolder folder = folderRegistry.findById((Long) row[0]);
+            if (folder != null) {
+                counts.put(folder.getFolderKey(), row[1].toString());
+            }
+        }
+        redisTemplate.delete(COUNTS_KEY);
+        if (!counts.isEmpty()) {
+            redisTemplate.opsForHash().putAll(COUNTS_KEY, counts);
+            redisTemplate.expire(COUNTS_KEY, COUNTS_TTL_HOURS, TimeUnit.HOURS);
+        }
+        return counts;
+    }
+
+    private record Snapshot(String tag, List<FolderSongCount> counts) {
+    }
+}
@@ -0,0 +1,104 @@
+package com.example.musicplayer.service;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.stereotype.Service;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * 每个歌单一个单调递增的版本号，存在 Redis Hash {@link #VERSIONS_KEY} 中，所有实例共享。
+ * 歌单内容（同步、删除、恢复）或票数变化时自增；"_catalog" 字段只随内容变化，供文件夹统计使用。
+ * "_epoch" 字段在 Hash 被清空后重新生成，保证 Redis 重置后旧 ETag 不会误命中。
+ * <p>
+ * 另有缓存代数 {@link #CACHE_GENERATIONS_KEY}：写进 Redis 歌单缓存键名，只随歌单内容变化自增，
+ * 失效一个歌单只需 HINCRBY，旧代数的键不再被读取，等 TTL 自然过期，无需 SCAN。
+ */
+@Service
+@RequiredArgsConstructor
+public class FolderVersionService {
+
+    public static final String VERSIONS_KEY = "songs:folder-versions";
+    public static final String CACHE_GENERATIONS_KEY = "songs:cache-generations";
+    private static final String CATALOG_FIELD = "_catalog";
+    private static final String EPOCH_FIELD = "_epoch";
+
+    private final StringRedisTemplate redisTemplate;
+
+    /**
+     * 票数变化时调用（投票投影脚本内直接 HINCRBY，同样作用于此 Hash）
+     */
+    public void bumpFolder(String folderKey) {
+        redisTemplate.opsForHash().increment(VERSIONS_KEY, folderKey, 1);
+    }
+
+    /**
+     * 歌单内容变化时调用，同时推进文件夹统计的版本
+     */
+    public void bumpCatalog(String folderKey) {
+        redisTemplate.opsForHash().increment(VERSIONS_KEY, folderKey, 1);
+        redisTemplate.opsForHash().increment(VERSIONS_KEY, CATALOG_FIELD, 1);
+    }
+
+    /**
+     * 所有版本失效，例如投票读模型全量重建之后
+     */
+    public void resetAll() {
+        redisTemplate.delete(VERSIONS_KEY);
+    }
+
+    /**
+     * 字段缺失时以当前毫秒数为起点，Hash 被淘汰后也不会回到旧代数、误读仍未过期的旧缓存
+     */
+    public String cacheGeneration(String folderKey) {
+        Object generation = redisTemplate.opsForHash().get(CACHE_GENERATIONS_KEY, folderKey);
+        if (generation == null) {
+            redisTemplate.opsForHash().putIfAbsent(CACHE_GENERATIONS_KEY, folderKey,
+                    Long.toString(System.currentTimeMillis()));
+            generation = redisTemplate.opsForHash().get(CACHE_GENERATIONS_KEY, folderKey);
+        }
+        return String.valueOf(generation);
+    }
+
+    /**
+     * 使这些歌单的 Redis 缓存整体失效，每个歌单一条 HINCRBY，一次往返
+     */
+    public void bumpCacheGenerations(Collection<String> folderKeys) {
+        if (folderKeys.isEmpty()) {
+            return;
+        }
+        redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            RedisSerializer<String> serializer = redisTemplate.getStringSerializer();
+            byte[] key = serializer.serialize(CACHE_GENERATIONS_KEY);
+            for (String folderKey : folderKeys) {
+                connection.hashCommands().hIncrBy(key, serializer.serialize(folderKey), 1);
+            }
+            return null;
+        });
+    }
+
+    public String folderTag(String folderKey) {
+        return readTag(folderKey);
+    }
+
+    public String catalogTag() {
+        return readTag(CATALOG_FIELD);
+    }
+
+    private String readTag(String field) {
+        List<Object> values = redisTemplate.opsForHash().multiGet(VERSIONS_KEY, Arrays.asList(EPOCH_FIELD, field));
+        Object epoch = values.get(0);
+        if (epoch == null) {
+            redisTemplate.opsForHash().putIfAbsent(VERSIONS_KEY, EPOCH_FIELD,
+                    Long.toString(System.currentTimeMillis(), 36));
+            values = redisTemplate.opsForHash().multiGet(VERSIONS_KEY, Arrays.asList(EPOCH_FIELD, field));
+            epoch = values.get(0);
+        }
+        Object version = values.get(1);
+        return epoch + "." + (version == null ? "0" : version);
+    }
+}
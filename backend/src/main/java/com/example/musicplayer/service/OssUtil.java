@@ -4,6 +4,7 @@ import com.aliyun.oss.OSS;
 import com.aliyun.oss.model.ListObjectsRequest;
 import com.aliyun.oss.model.OSSObjectSummary;
 import com.aliyun.oss.model.ObjectListing;
+import jakarta.annotation.PostConstruct;
 import lombok.Getter;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
@@ -11,6 +12,10 @@ import org.springframework.stereotype.Component;
 import java.util.ArrayList;
 import java.util.Date;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
 
 @Component
 public class OssUtil {
@@ -24,16 +29,98 @@ public class OssUtil {
     @Value("${aliyun.oss.expiration-hours:24}")
     private long expirationHours;
 
+    // 过期时间向上对齐到该粒度：同一时间桶内各实例签出的 URL 完全相同，浏览器/CDN 可以复用缓存
+    @Value("${aliyun.oss.signature-bucket-minutes:60}")
+    private long signatureBucketMinutes;
+
+    // 缓存的签名剩余有效期低于该值时重新签名；需大于响应体缓存寿命 (6h)，且与 expiration-hours 之差也要大于它，启动时校验
+    @Value("${aliyun.oss.signature-refresh-hours:12}")
+    private long signatureRefreshHours;
+
+    private final Map<String, SignedUrl> signedUrls = new ConcurrentHashMap<>();
+    private final LongAdder signHits = new LongAdder();
+    private final LongAdder signMisses = new LongAdder();
+    private volatile long lastPurgeAt;
+
     public OssUtil(OSS ossClient) {
         this.ossClient = ossClient;
     }
 
+    /**
+     * 缓存的响应体最多保存 {@link SongListPayloadCache#MAX_AGE_HOURS}，其中的签名在放入时剩余有效期不少于 refresh，
+     * 因此 refresh 必须大于该寿命，客户端拿到的 URL 才不会临近过期；
+     * expiration - refresh 同样要大于该寿命，否则每次重建响应体都会把整个歌单重新签名一遍。
+     */
+    @PostConstruct
+    public void validateSignatureSettings() {
+        long refreshMinutes = TimeUnit.HOURS.toMinutes(signatureRefreshHours);
+        if (signatureBucketMinutes <= 0 || signatureBucketMinutes >= refreshMinutes) {
+            throw new IllegalStateException("aliyun.oss.signature-bucket-minutes must be positive and "
+                    + "shorter than aliyun.oss.signature-refresh-hours");
+        }
+        if (signatureRefreshHours <= SongListPayloadCache.MAX_AGE_HOURS) {
+            throw new IllegalStateException("aliyun.oss.signature-refresh-hours must exceed the "
+                    + SongListPayloadCache.MAX_AGE_HOURS + "h song list payload lifetime");
+        }
+        if (expirationHours - signatureRefreshHours <= SongListPayloadCache.MAX_AGE_HOURS) {
+            throw new IllegalStateException("aliyun.oss.expiration-hours minus aliyun.oss.signature-refresh-hours "
+                    + "must exceed the " + SongListPayloadCache.MAX_AGE_HOURS + "h song list payload lifetime");
+        }
+    }
+
+    /**
+     * 返回对齐到时间桶的过期时间，保证剩余有效期不少于 expiration-hours
+     */
     public Date getExpirationDate() {
-        return new Date(System.currentTimeMillis() + expirationHours * 3600 * 1000);
+        long bucketMillis = TimeUnit.MINUTES.toMillis(signatureBucketMinutes);
+        long earliest = System.currentTimeMillis() + TimeUnit.HOURS.toMillis(expirationHours);
+        return new Date(Math.ceilDiv(earliest, bucketMillis) * bucketMillis);
     }
 
     public String buildSignedUrl(String key) {
-        return ossClient.generatePresignedUrl(bucketName, key, getExpirationDate()).toString();
+        return signUrl(key).url();
+    }
+
+    /**
+     * 按 object key 缓存签名 URL，在剩余有效期跌破 signature-refresh-hours 之前一直复用
+     */
+    public SignedUrl signUrl(String key) {
+        long now = System.currentTimeMillis();
+        SignedUrl cached = signedUrls.get(key);
+        if (cached != null && cached.expiresAt() - now >= TimeUnit.HOURS.toMillis(signatureRefreshHours)) {
+            signHits.increment();
+            return cached;
+        }
+        signMisses.increment();
+        Date expiration = getExpirationDate();
+        SignedUrl signed = new SignedUrl(
+                ossClient.generatePresignedUrl(bucketName, key, expiration).toString(),
+                expiration.getTime());
+        signedUrls.put(key, signed);
+        purgeExpired(now);
+        return signed;
+    }
+
+    public Map<String, Object> signedUrlStats() {
+        long hits = signHits.sum();
+        long misses = signMisses.sum();
+        long total = hits + misses;
+        return Map.of(
+                "hits", hits,
+                "misses", misses,
+                "hitRate", total == 0 ? 0.0 : (double) hits / total,
+                "entries", signedUrls.size(),
+                "bucketMinutes", signatureBucketMinutes,
+                "refreshHours", signatureRefreshHours);
+    }
+
+    // 每个时间桶最多清理一次已过期的条目，防止已删除对象的签名一直留在内存里
+    private void purgeExpired(long now) {
+        if (now - lastPurgeAt < TimeUnit.MINUTES.toMillis(signatureBucketMinutes)) {
+            return;
+        }
+        lastPurgeAt = now;
+        signedUrls.values().removeIf(url -> url.expiresAt() <= now);
     }
 
     public String extractFilename(String key) {
@@ -70,4 +157,29 @@ public class OssUtil {
     public List<OSSObjectSummary> listFilesByPrefix(String prefix) {
         return listFilesByPrefixAndSuffix(prefix, null);
     }
+
+    /**
+     * 列出 prefix 下的一级“目录”（以 / 结尾的公共前缀）
+     */
+    public List<String> listSubFolders(String prefix) {
+        List<String> results = new ArrayList<>();
+        String nextMarker = null;
+        ObjectListing objectListing;
+
+        do {
+            objectListing = ossClient.listObjects(
+                    new ListObjectsRequest(bucketName)
+                            .withPrefix(prefix)
+                            .withDelimiter("/")
+                            .withMarker(nextMarker)
+                            .withMaxKeys(1000));
+            results.addAll(objectListing.getCommonPrefixes());
+            nextMarker = objectListing.getNextMarker();
+        } while (objectListing.isTruncated());
+
+        return results;
+    }
+
+    public record SignedUrl(String url, long expiresAt) {
+    }
 }
@@ -0,0 +1,189 @@
+package com.example.musicplayer.service;
+
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 播放次数写回缓冲（write-behind）。
+ * <p>
+ * 播放请求只在内存中按 songId 累加（{@link LongAdder}），定时任务把一个周期内的增量合并成
+ * 按歌曲数分块的单条 UPDATE 写入 MySQL，写库次数与"本周期被播放的不同歌曲数"成正比，而不是播放次数。
+ * <p>
+ * 开启 app.play-count.redis-stage 后，各实例先把增量 HINCRBY 到共享 Hash {@link #PENDING_KEY}，
+ * 再由持有任务锁的实例统一落库；实例崩溃时最多丢失一个刷新周期内尚未推送到 Redis 的增量。
+ */
+@Slf4j
+@Service
+public class PlayCountBuffer {
+
+    private static final String PENDING_KEY = "songs:play-count:pending";
+    private static final String FLUSHING_KEY = "songs:play-count:flushing";
+    private static final int UPDATE_CHUNK_SIZE = 500;
+
+    // ARGV 依次为 (songId, 增量)，一块增量在一次脚本中写入
+    private static final DefaultRedisScript<Long> HINCRBY_SCRIPT = new DefaultRedisScript<>(
+            "for i = 1, #ARGV, 2 do redis.call('hincrby', KEYS[1], ARGV[i], ARGV[i + 1]) end return 1",
+            Long.class);
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final StringRedisTemplate redisTemplate;
+    private final boolean redisStage;
+
+    // 条目不删除，只 sumThenReset：删除后仍持有旧 LongAdder 的线程会把增量加到已脱离 Map 的对象上
+    private final Map<Long, LongAdder> pending = new ConcurrentHashMap<>();
+
+    public PlayCountBuffer(JdbcTemplate jdbcTemplate, TransactionTemplate transactionTemplate,
+                           StringRedisTemplate redisTemplate,
+                           @Value("${app.play-count.redis-stage:false}") boolean redisStage) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+        this.redisTemplate = redisTemplate;
+        this.redisStage = redisStage;
+    }
+
+    public void record(Long songId) {
+        pending.computeIfAbsent(songId, _ -> new LongAdder()).increment();
+    }
+
+    public boolean isRedisStage() {
+        return redisStage;
+    }
+
+    /**
+     * 把本实例的增量推出去：未开启 Redis 暂存时直接写库，否则 HINCRBY 到共享 Hash
+     *
+     * @return 本次涉及的歌曲数
+     */
+    public synchronized int flushLocal() {
+        Map<Long, Long> deltas = drainLocal();
+        if (deltas.isEmpty()) {
+            return 0;
+        }
+        if (redisStage) {
+            pushToRedis(deltas);
+            return deltas.size();
+        }
+        try {
+            writeToDatabase(deltas);
+        } catch (RuntimeException e) {
+            // 写库在同一事务中，失败时整体回滚，把增量全部放回，下个周期重试
+            restore(deltas.entrySet());
+            throw e;
+        }
+        return deltas.size();
+    }
+
+    /**
+     * Redis 暂存模式下把共享 Hash 落库，调用方需持有任务锁。
+     * 先 RENAME 为处理中 Hash，落库成功后再删除；失败时保留，下次优先重试。
+     *
+     * @return 本次写库的歌曲数
+     */
+    public int flushRedisStage() {
+        if (!Boolean.TRUE.equals(redisTemplate.hasKey(FLUSHING_KEY))) {
+            if (!Boolean.TRUE.equals(redisTemplate.hasKey(PENDING_KEY))) {
+                return 0;
+            }
+            redisTemplate.rename(PENDING_KEY, FLUSHING_KEY);
+        }
+        Map<Long, Long> deltas = new HashMap<>();
+        redisTemplate.<String, String>opsForHash().entries(FLUSHING_KEY)
+                .forEach((songId, delta) -> deltas.put(Long.valueOf(songId), Long.valueOf(delta)));
+        writeToDatabase(deltas);
+        redisTemplate.delete(FLUSHING_KEY);
+        return deltas.size();
+    }
+
+    @PreDestroy
+    public void flushOnShutdown() {
+        try {
+            int songs = flushLocal();
+            if (songs > 0) {
+                log.info("【播放计数】停机前已写出 {} 首歌曲的播放增量", songs);
+            }
+        } catch (Exception e) {
+            log.error("【播放计数】停机前写出播放增量失败", e);
+        }
+    }
+
+    private Map<Long, Long> drainLocal() {
+        Map<Long, Long> deltas = new HashMap<>();
+        pending.forEach((songId, adder) -> {
+            long delta = adder.sumThenReset();
+            if (delta > 0) {
+                deltas.put(songId, delta);
+            }
+        });
+        return deltas;
+    }
+
+    /**
+     * 按块用 Lua 脚本 HINCRBY，每块整体执行或整体不执行；某块失败时只放回该块及之后尚未写入的增量，
+     * 已写入的块不会在下个周期重复计数
+     */
+    private void pushToRedis(Map<Long, Long> deltas) {
+        List<Map.Entry<Long, Long>> entries = new ArrayList<>(deltas.entrySet());
+        for (int from = 0; from < entries.size(); from += UPDATE_CHUNK_SIZE) {
+            List<Map.Entry<Long, Long>> chunk = entries.subList(from, Math.min(entries.size(), from + UPDATE_CHUNK_SIZE));
+            Object[] args = new Object[chunk.size() * 2];
+            for (int i = 0; i < chunk.size(); i++) {
+                args[i * 2] = chunk.get(i).getKey().toString();
+                args[i * 2 + 1] = chunk.get(i).getValue().toString();
+            }
+            try {
+                redisTemplate.execute(HINCRBY_SCRIPT, List.of(PENDING_KEY), args);
+            } catch (RuntimeException e) {
+                restore(entries.subList(from, entries.size()));
+                throw e;
+            }
+        }
+    }
+
+    private void restore(Collection<Map.Entry<Long, Long>> deltas) {
+        deltas.forEach(entry -> pending.computeIfAbsent(entry.getKey(), _ -> new LongAdder()).add(entry.getValue()));
+    }
+
+    /**
+     * UPDATE songs SET play_count = play_count + CASE id WHEN ? THEN ? ... END WHERE id IN (...)，
+     * 所有分块在同一事务中，失败时整体回滚，调用方可以安全重试
+     */
+    private void writeToDatabase(Map<Long, Long> deltas) {
+        transactionTemplate.executeWithoutResult(_ -> writeChunks(deltas));
+    }
+
+    private void writeChunks(Map<Long, Long> deltas) {
+        List<Map.Entry<Long, Long>> entries = new ArrayList<>(deltas.entrySet());
+        for (int from = 0; from < entries.size(); from += UPDATE_CHUNK_SIZE) {
+            List<Map.Entry<Long, Long>> chunk = entries.subList(from, Math.min(entries.size(), from + UPDATE_CHUNK_SIZE));
+            StringBuilder sql = new StringBuilder("UPDATE songs SET play_count = play_count + CASE id");
+            List<Object> args = new ArrayList<>(chunk.size() * 3);
+            for (Map.Entry<Long, Long> entry : chunk) {
+                sql.append(" WHEN ? THEN ?");
+                args.add(entry.getKey());
+                args.add(entry.getValue());
+            }
+            sql.append(" ELSE 0 END WHERE id IN (");
+            for (int i = 0; i < chunk.size(); i++) {
+                sql.append(i == 0 ? "?" : ",?");
+                args.add(chunk.get(i).getKey());
+            }
+            sql.append(')');
+            jdbcTemplate.update(sql.toString(), args.toArray());
+        }
+    }
+}
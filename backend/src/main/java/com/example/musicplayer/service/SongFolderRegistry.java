@@ -0,0 +1,141 @@
+package com.example.musicplayer.service;
+
+import com.example.musicplayer.model.SongFolder;
+import com.example.musicplayer.repository.SongFolderRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+import java.util.*;
+
+/**
+ * 歌单注册表：持久化在 song_folders 表，内存中保存一份快照。
+ * OSS 同步时会把 music/ 下新出现的目录自动登记为歌单，无需重新部署。
+ * 其他实例在收到全量失效消息（同步结束时发布）时重新读取；查询未知歌单时也会按最小间隔重读一次，兜底丢失的消息。
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class SongFolderRegistry {
+
+    private static final String MUSIC_ROOT = "music/";
+
+    // 注册表为空时写入的初始歌单
+    private static final Map<String, String> SEED_FOLDERS = Map.of(
+            "ha_ji_mi", "哈基米",
+            "dian_gun", "溜冰场",
+            "da_si_ma", "大司马",
+            "ding_zhen", "丁真",
+            "dxl", "东洋雪莲",
+            "DDF", "哲学",
+            "true_music", "真正的音乐");
+
+    // 未知歌单触发重读的最小间隔，避免任意 folderKey 反复查库
+    private static final long MISS_REFRESH_INTERVAL_MILLIS = 60_000;
+
+    private final SongFolderRepository folderRepository;
+    private final OssUtil ossUtil;
+
+    private volatile Snapshot snapshot;
+    private volatile long refreshedAt;
+
+    public Collection<SongFolder> all() {
+        return snapshot().byKey().values();
+    }
+
+    public SongFolder findByKey(String folderKey) {
+        return snapshot().byKey().get(folderKey);
+    }
+
+    public SongFolder findById(Long folderId) {
+        return folderId == null ? null : snapshot().byId().get(folderId);
+    }
+
+    public SongFolder require(String folderKey) {
+        SongFolder folder = findByKey(folderKey);
+        if (folder == null && refreshAfterMiss()) {
+            folder = findByKey(folderKey);
+        }
+        if (folder == null) {
+            throw new IllegalArgumentException("Invalid folder key: " + folderKey);
+        }
+        return folder;
+    }
+
+    /**
+     * 根据对象键前缀匹配歌单，仅用于 folder_id 尚未回填的旧数据
+     */
+    public SongFolder findByObjectKey(String objectKey) {
+        if (objectKey == null) {
+            return null;
+        }
+        for (SongFolder folder : all()) {
+            if (objectKey.startsWith(folder.getOssPrefix())) {
+                return folder;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 扫描 OSS 中 music/ 下的一级目录，未登记的目录以目录名作为 folderKey 登记
+     */
+    public synchronized void discoverFromOss() {
+        Set<String> knownNames = new HashSet<>();
+        for (SongFolder folder : all()) {
+            knownNames.add(folder.getDisplayName());
+        }
+        List<SongFolder> newFolders = new ArrayList<>();
+        for (String prefix : ossUtil.listSubFolders(MUSIC_ROOT)) {
+            String name = prefix.substring(MUSIC_ROOT.length(), prefix.length() - 1);
+            if (!name.isEmpty() && knownNames.add(name)) {
+                newFolders.add(new SongFolder(name, name));
+            }
+        }
+        if (!newFolders.isEmpty()) {
+            folderRepository.saveAll(newFolders);
+            log.info("【歌单注册表】发现新歌单目录: {}",
+                    newFolders.stream().map(SongFolder::getDisplayName).toList());
+        }
+        refresh();
+    }
+
+    public synchronized void refresh() {
+        List<SongFolder> folders = folderRepository.findAll();
+        if (folders.isEmpty()) {
+            folders = folderRepository.saveAll(SEED_FOLDERS.entrySet().stream()
+                    .map(entry -> new SongFolder(entry.getKey(), entry.getValue()))
+                    .toList());
+        }
+        Map<String, SongFolder> byKey = new LinkedHashMap<>();
+        Map<Long, SongFolder> byId = new HashMap<>();
+        folders.stream()
+                .sorted(Comparator.comparing(SongFolder::getId))
+                .forEach(folder -> {
+                    byKey.put(folder.getFolderKey(), folder);
+                    byId.put(folder.getId(), folder);
+                });
+        snapshot = new Snapshot(Collections.unmodifiableMap(byKey), Collections.unmodifiableMap(byId));
+        refreshedAt = System.currentTimeMillis();
+    }
+
+    private synchronized boolean refreshAfterMiss() {
+        if (System.currentTimeMillis() - refreshedAt < MISS_REFRESH_INTERVAL_MILLIS) {
+            return false;
+        }
+        refresh();
+        return true;
+    }
+
+    private Snapshot snapshot() {
+        Snapshot current = snapshot;
+        if (current == null) {
+            refresh();
+            current = snapshot;
+        }
+        return current;
+    }
+
+    private record Snapshot(Map<String, SongFolder> byKey, Map<Long, SongFolder> byId) {
+    }
+}
@@ -0,0 +1,125 @@
+package com.example.musicplayer.service;
+
+import com.example.musicplayer.repository.SongRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+import java.util.BitSet;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * 有效歌曲 id 的内存位图，供投票等只需判断歌曲是否存在的路径使用，不再加载整个 Song 实体。
+ * <p>
+ * 位图由一次只查主键的查询构建（自增 id 连续，万首歌约 1KB），OSS 同步后重建，删除、恢复时原地更新。
+ * 位图只作为正向缓存：未命中（新歌、已删除歌曲、其他实例刚恢复的歌曲、伪造的 id）时按主键确认一次，
+ * 确认为有效歌曲的 id 会补入位图。更新采用写时复制，读路径无锁。
+ * <p>
+ * 匿名的播放计数路径改用 {@link #isActive}：未命中时不按 id 查库，而是至多每分钟整体重建一次位图，
+ * 伪造的 id 无论多少都不会让查库次数随请求数增长。
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class SongIdIndex {
+
+    private static final long MISS_REBUILD_INTERVAL_MILLIS = 60_000;
+
+    private final SongRepository songRepository;
+
+    private volatile BitSet activeIds;
+    private volatile long rebuiltAt;
+
+    /**
+     * 歌曲是否存在；已删除的歌曲仍视为存在（与按主键查询的语义一致），只是每次都走确认路径
+     */
+    public boolean exists(Long songId) {
+        if (songId == null || songId <= 0) {
+            return false;
+        }
+        if (songId <= Integer.MAX_VALUE && activeIds().get(songId.intValue())) {
+            return true;
+        }
+        Optional<Integer> deleted = songRepository.findDeletedFlagById(songId);
+        if (deleted.isEmpty()) {
+            return false;
+        }
+        if (deleted.get() == 0) {
+            markActive(songId);
+        }
+        return true;
+    }
+
+    /**
+     * 歌曲是否存在且未删除；未命中时至多每分钟重建一次位图（覆盖其他实例新同步的歌曲），不按 id 查库
+     */
+    public boolean isActive(Long songId) {
+        if (songId == null || songId <= 0 || songId > Integer.MAX_VALUE) {
+            return false;
+        }
+        if (activeIds().get(songId.intValue())) {
+            return true;
+        }
+        return rebuildAfterMiss() && activeIds.get(songId.intValue());
+    }
+
+    public void markActive(Long songId) {
+        update(songId, true);
+    }
+
+    public void markDeleted(Long songId) {
+        update(songId, false);
+    }
+
+    /**
+     * 用一次主键查询重建位图
+     */
+    public void rebuild() {
+        List<Long> ids = songRepository.findActiveIds();
+        BitSet rebuilt = new BitSet(ids.isEmpty() ? 0 : Math.toIntExact(Math.min(ids.getLast() + 1, Integer.MAX_VALUE)));
+        for (Long id : ids) {
+            if (id > 0 && id <= Integer.MAX_VALUE) {
+                rebuilt.set(id.intValue());
+            }
+        }
+        synchronized (this) {
+            activeIds = rebuilt;
+            rebuiltAt = System.currentTimeMillis();
+        }
+        log.info("【歌曲索引】已重建，有效歌曲 {} 首", rebuilt.cardinality());
+    }
+
+    private synchronized boolean rebuildAfterMiss() {
+        if (System.currentTimeMillis() - rebuiltAt < MISS_REBUILD_INTERVAL_MILLIS) {
+            return false;
+        }
+        rebuild();
+        return true;
+    }
+
+    private BitSet activeIds() {
+        BitSet current = activeIds;
+        if (current == null) {
+            rebuild();
+            current = activeIds;
+        }
+        return current;
+    }
+
+    private void update(Long songId, boolean active) {
+        if (songId == null || songId <= 0 || songId > Integer.MAX_VALUE) {
+            return;
+        }
+        activeIds();
+        synchronized (this) {
+            BitSet current = activeIds;
+            if (current.get(songId.intValue()) == active) {
+                return;
+            }
+            BitSet copy = (BitSet) current.clone();
+            copy.set(songId.intValue(), active);
+            activeIds = copy;
+        }
+    }
+}
@@ -0,0 +1,302 @@
+package com.example.musicplayer.service;
+
+import com.example.musicplayer.model.Song;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.stereotype.Component;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * Redis 歌单缓存 songs:folder:* 的值编码。
+ * <p>
+ * 二进制格式按列存放：先写所有 id，再写所有名称……数字用变长整数（id 做差分），
+ * object key 去掉全歌单公共前缀，不再像 JSON 默认类型那样每首歌重复类名和字段名。
+ * 头部以 0x00 开头（JSON 不可能以此开头），后跟版本号，读取时两种格式都能识别，滚动发布期间新旧实例可共存。
+ * 写入格式由 app.song-cache.redis-format 决定：binary（默认）或 json（回退到旧序列化器）。
+ */
+@Component
+public class SongListCodec {
+
+    private static final byte MAGIC_0 = 0x00;
+    private static final byte MAGIC_1 = 'B';
+    private static final byte MAGIC_2 = 'S';
+    private static final byte VERSION_1 = 1;
+
+    private final RedisSerializer<Object> legacySerializer;
+    private final boolean writeBinary;
+
+    @SuppressWarnings("unchecked")
+    public SongListCodec(RedisTemplate<String, Object> jsonRedisTemplate,
+                         @Value("${app.song-cache.redis-format:binary}") String format) {
+        this.legacySerializer = (RedisSerializer<Object>) jsonRedisTemplate.getValueSerializer();
+        if (!"binary".equals(format) && !"json".equals(format)) {
+            throw new IllegalStateException("app.song-cache.redis-format must be binary or json: " + format);
+        }
+        this.writeBinary = "binary".equals(format);
+    }
+
+    public byte[] encode(List<Song> songs) {
+        return writeBinary ? encodeBinary(songs) : legacySerializer.serialize(songs);
+    }
+
+    /**
+     * @return null 表示无法识别（例如未来版本写入的格式），调用方按缓存未命中处理
+     * @throws RuntimeException 数据截断或损坏
+     */
+    @SuppressWarnings("unchecked")
+    public List<Song> decode(byte[] bytes) {
+        if (bytes == null || bytes.length == 0) {
+            return null;
+        }
+        if (bytes[0] != MAGIC_0) {
+            return (List<Song>) legacySerializer.deserialize(bytes);
+        }
+        if (bytes.length < 4 || bytes[1] != MAGIC_1 || bytes[2] != MAGIC_2 || bytes[3] != VERSION_1) {
+            return null;
+        }
+        return decodeBinary(ByteBuffer.wrap(bytes, 4, bytes.length - 4));
+    }
+
+    /**
+     * 用同一份歌单对比两种格式的体积和编解码耗时，供管理员在真实数据上评估
+     */
+    public Map<String, Object> compare(List<Song> songs, int rounds) {
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("songs", songs.size());
+        result.put("rounds", rounds);
+        result.put("json", measure(rounds, () -> legacySerializer.serialize(songs)));
+        result.put("binary", measure(rounds, () -> encodeBinary(songs)));
+        return result;
+    }
+
+    private Map<String, Object> measure(int rounds, Supplier<byte[]> encoder) {
+        byte[] bytes = encoder.get();
+        long encodeNanos = 0;
+        long decodeNanos = 0;
+        for (int i = 0; i < rounds; i++) {
+            long start = System.nanoTime();
+            bytes = encoder.get();
+            encodeNanos += System.nanoTime() - start;
+            start = System.nanoTime();
+            decode(bytes);
+            decodeNanos += System.nanoTime() - start;
+        }
+        return Map.of(
+                "bytes", bytes.length,
+                "encodeMicros", encodeNanos / 1000 / Math.max(1, rounds),
+                "decodeMicros", decodeNanos / 1000 / Math.max(1, rounds));
+    }
+
+    private byte[] encodeBinary(List<Song> songs) {
+        Writer out = new Writer(64 + songs.size() * 48);
+        out.raw(MAGIC_0);
+        out.raw(MAGIC_1);
+        out.raw(MAGIC_2);
+        out.raw(VERSION_1);
+        out.varLong(songs.size());
+
+        long previousId = 0;
+        for (Song song : songs) {
+            long id = song.getId() == null ? 0 : song.getId();
+            out.zigZag(id - previousId);
+            previousId = id;
+        }
+        for (Song song : songs) {
+            out.nullableLong(song.getFolderId());
+        }
+        for (Song song : songs) {
+            out.string(song.getName());
+        }
+        String keyPrefix = commonKeyPrefix(songs);
+        out.string(keyPrefix);
+        for (Song song : songs) {
+            out.string(song.getKey() == null ? null : song.getKey().substring(keyPrefix.length()));
+        }
+        for (Song song : songs) {
+            out.varLong(intOrZero(song.getLikeCount()));
+            out.varLong(intOrZero(song.getDislikeCount()));
+            out.varLong(intOrZero(song.getPlayCount()));
+            out.varLong(intOrZero(song.getIsDeleted()));
+        }
+        for (Song song : songs) {
+            out.time(song.getCreatedAt());
+        }
+        for (Song song : songs) {
+            out.time(song.getUpdatedAt());
+        }
+        return out.toByteArray();
+    }
+
+    private List<Song> decodeBinary(ByteBuffer in) {
+        int size = Math.toIntExact(readVarLong(in));
+        // 每首歌至少占一个字节，损坏的长度不能用来预分配
+        if (size > in.remaining()) {
+            throw new IllegalStateException("Corrupt song list: " + size + " songs in " + in.remaining() + " bytes");
+        }
+        List<Song> songs = new ArrayList<>(size);
+        long id = 0;
+        for (int i = 0; i < size; i++) {
+            id += readZigZag(in);
+            Song song = new Song();
+            song.setId(id);
+            songs.add(song);
+        }
+        for (Song song : songs) {
+            song.setFolderId(readNullableLong(in));
+        }
+        for (Song song : songs) {
+            song.setName(readString(in));
+        }
+        String keyPrefix = readString(in);
+        for (Song song : songs) {
+            String suffix = readString(in);
+            song.setKey(suffix == null ? null : keyPrefix + suffix);
+        }
+        for (Song song : songs) {
+            song.setLikeCount((int) readVarLong(in));
+            song.setDislikeCount((int) readVarLong(in));
+            song.setPlayCount((int) readVarLong(in));
+            song.setIsDeleted((int) readVarLong(in));
+        }
+        for (Song song : songs) {
+            song.setCreatedAt(readTime(in));
+        }
+        for (Song song : songs) {
+            song.setUpdatedAt(readTime(in));
+        }
+        return songs;
+    }
+
+    private static String commonKeyPrefix(List<Song> songs) {
+        String prefix = null;
+        for (Song song : songs) {
+            String key = song.getKey();
+            if (key == null) {
+                continue;
+            }
+            if (prefix == null) {
+                prefix = key;
+                continue;
+            }
+            int length = 0;
+            int max = Math.min(prefix.length(), key.length());
+            while (length < max && prefix.charAt(length) == key.charAt(length)) {
+                length++;
+            }
+            if (length > 0 && Character.isHighSurrogate(prefix.charAt(length - 1))) {
+                length--;
+            }
+            prefix = prefix.substring(0, length);
+        }
+        return prefix == null ? "" : prefix;
+    }
+
+    private static long intOrZero(Integer value) {
+        return value == null ? 0 : value;
+    }
+
+    private static long readVarLong(ByteBuffer in) {
+        long value = 0;
+        int shift = 0;
+        while (true) {
+            byte b = in.get();
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+            shift += 7;
+            if (shift > 63) {
+                throw new IllegalStateException("Malformed song list cache entry");
+            }
+        }
+    }
+
+    private static long readZigZag(ByteBuffer in) {
+        long raw = readVarLong(in);
+        return (raw >>> 1) ^ -(raw & 1);
+    }
+
+    // 0 表示 null，其余为 value + 1
+    private static Long readNullableLong(ByteBuffer in) {
+        long raw = readVarLong(in);
+        return raw == 0 ? null : raw - 1;
+    }
+
+    private static String readString(ByteBuffer in) {
+        long raw = readVarLong(in);
+        if (raw == 0) {
+            return null;
+        }
+        int length = Math.toIntExact(raw - 1);
+        String value = new String(in.array(), in.arrayOffset() + in.position(), length, StandardCharsets.UTF_8);
+        in.position(in.position() + length);
+        return value;
+    }
+
+    private static LocalDateTime readTime(ByteBuffer in) {
+        long raw = readVarLong(in);
+        if (raw == 0) {
+            return null;
+        }
+        int nanos = (int) readVarLong(in);
+        return LocalDateTime.ofEpochSecond(raw - 1, nanos, ZoneOffset.UTC);
+    }
+
+    private static final class Writer extends ByteArrayOutputStream {
+
+        Writer(int capacity) {
+            super(capacity);
+        }
+
+        void raw(byte b) {
+            write(b);
+        }
+
+        void varLong(long value) {
+            while ((value & ~0x7FL) != 0) {
+                write((int) ((value & 0x7F) | 0x80));
+                value >>>= 7;
+            }
+            write((int) value);
+        }
+
+        void zigZag(long value) {
+            varLong((value << 1) ^ (value >> 63));
+        }
+
+        void nullableLong(Long value) {
+            varLong(value == null ? 0 : value + 1);
+        }
+
+        void string(String value) {
+            if (value == null) {
+                varLong(0);
+                return;
+            }
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            varLong(bytes.length + 1L);
+            write(bytes, 0, bytes.length);
+        }
+
+        // 以 UTC 解释 LocalDateTime，只做无损往返，不涉及时区换算；秒数 +1 以便 0 表示 null
+        void time(LocalDateTime value) {
+            if (value == null) {
+                varLong(0);
+                return;
+            }
+            varLong(value.toEpochSecond(ZoneOffset.UTC) + 1);
+            varLong(value.getNano());
+        }
+    }
+}
@@ -0,0 +1,196 @@
+package com.example.musicplayer.service;
+
+import com.example.musicplayer.model.Song;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * 歌单缓存未命中时的单飞（single-flight）加载。
+ * <p>
+ * 同一实例内，同一缓存键同时只有一个线程查库，其余线程等待并拿到同一结果；
+ * 多实例之间用 Redis 短租约（{@link RedisTaskLock}）选出一个实例查库，其余实例轮询 Redis 缓存，
+ * 等待超时后才自行查库兜底，避免租约持有者宕机时请求一直挂起。
+ * <p>
+ * 临近过期的缓存由 {@link #refreshInBackground} 在后台线程重建（refresh-ahead），期间继续返回旧值。
+ */
+@Slf4j
+@Component
+public class SongListLoadCoordinator {
+
+    private static final String LEASE_PREFIX = "songs:load-lease:";
+    private static final String REFRESH_LEASE_PREFIX = "songs:refresh-lease:";
+    private static final Duration REFRESH_LEASE_TIME = Duration.ofMinutes(1);
+    private static final long POLL_INTERVAL_MILLIS = 50;
+
+    private final RedisTaskLock taskLock;
+    private final Duration leaseTime;
+    private final long maxWaitMillis;
+
+    private final Map<String, CompletableFuture<List<Song>>> inFlight = new ConcurrentHashMap<>();
+    private final Set<String> refreshing = ConcurrentHashMap.newKeySet();
+    private final ExecutorService refreshExecutor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "song-cache-refresh");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final LongAdder loads = new LongAdder();
+    private final LongAdder coalesced = new LongAdder();
+    private final LongAdder remoteWaits = new LongAdder();
+    private final LongAdder remoteFallbacks = new LongAdder();
+    private final LongAdder refreshes = new LongAdder();
+
+    public SongListLoadCoordinator(RedisTaskLock taskLock,
+                                   @Value("${app.song-cache.load-lease-seconds:10}") long leaseSeconds,
+                                   @Value("${app.song-cache.load-wait-millis:3000}") long maxWaitMillis) {
+        this.taskLock = taskLock;
+        this.leaseTime = Duration.ofSeconds(leaseSeconds);
+        this.maxWaitMillis = maxWaitMillis;
+    }
+
+    /**
+     * @param cacheReader 读取 Redis 缓存，未命中返回 null；命中时应同时写入本地缓存
+     * @param loader      查库并写回缓存
+     */
+    public List<Song> load(String cacheKey, Supplier<List<Song>> cacheReader, Supplier<List<Song>> loader) {
+        CompletableFuture<List<Song>> mine = new CompletableFuture<>();
+        CompletableFuture<List<Song>> existing = inFlight.putIfAbsent(cacheKey, mine);
+        if (existing != null) {
+            coalesced.increment();
+            try {
+                return existing.join();
+            } catch (CompletionException e) {
+                if (e.getCause() instanceof RuntimeException cause) {
+                    throw cause;
+                }
+                throw e;
+            }
+        }
+        try {
+            List<Song> songs = loadAcrossInstances(cacheKey, cacheReader, loader);
+            mine.complete(songs);
+            return songs;
+        } catch (RuntimeException e) {
+            mine.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(cacheKey, mine);
+        }
+    }
+
+    /**
+     * 异步重建一个仍可用的缓存键；本实例已在重建或其他实例持有重建租约时直接忽略
+     */
+    public void refreshInBackground(String cacheKey, Runnable refresher) {
+        if (!refreshing.add(cacheKey)) {
+            return;
+        }
+        try {
+            refreshExecutor.execute(() -> {
+                try {
+                    refreshNow(cacheKey, refresher);
+                } finally {
+                    refreshing.remove(cacheKey);
+                }
+            });
+        } catch (RuntimeException e) {
+            refreshing.remove(cacheKey);
+            throw e;
+        }
+    }
+
+    /**
+     * 在调用线程同步重建，供定时预热使用
+     */
+    public boolean refreshNow(String cacheKey, Runnable refresher) {
+        String leaseKey = REFRESH_LEASE_PREFIX + cacheKey;
+        String token = taskLock.tryAcquire(leaseKey, REFRESH_LEASE_TIME);
+        if (token == null) {
+            return false;
+        }
+        try {
+            refresher.run();
+            refreshes.increment();
+            return true;
+        } catch (Exception e) {
+            log.warn("【歌单缓存】后台刷新 {} 失败，继续使用旧缓存", cacheKey, e);
+            return false;
+        } finally {
+            taskLock.release(leaseKey, token);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        refreshExecutor.shutdownNow();
+    }
+
+    public Map<String, Object> stats() {
+        return Map.of(
+                "loads", loads.sum(),
+                "coalesced", coalesced.sum(),
+                "remoteWaits", remoteWaits.sum(),
+                "remoteFallbacks", remoteFallbacks.sum(),
+                "inFlight", inFlight.size(),
+                "refreshes", refreshes.sum(),
+                "refreshing", refreshing.size());
+    }
+
+    private List<Song> loadAcrossInstances(String cacheKey, Supplier<List<Song>> cacheReader,
+                                           Supplier<List<Song>> loader) {
+        String leaseKey = LEASE_PREFIX + cacheKey;
+        long deadline = System.currentTimeMillis() + maxWaitMillis;
+        boolean waited = false;
+        while (true) {
+            String token = taskLock.tryAcquire(leaseKey, leaseTime);
+            if (token != null) {
+                try {
+                    // 其他实例可能刚写完缓存后释放租约
+                    List<Song> cached = cacheReader.get();
+                    if (cached != null) {
+                        return cached;
+                    }
+                    loads.increment();
+                    return loader.get();
+                } finally {
+                    taskLock.release(leaseKey, token);
+                }
+            }
+            if (!waited) {
+                remoteWaits.increment();
+                waited = true;
+            }
+            if (System.currentTimeMillis() >= deadline) {
+                break;
+            }
+            try {
+                Thread.sleep(POLL_INTERVAL_MILLIS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+            List<Song> cached = cacheReader.get();
+            if (cached != null) {
+                return cached;
+            }
+        }
+        remoteFallbacks.increment();
+        log.warn("【歌单缓存】等待其他实例加载 {} 超时，本实例直接查库", cacheKey);
+        loads.increment();
+        return loader.get();
+    }
+}
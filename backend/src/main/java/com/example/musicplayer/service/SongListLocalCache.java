@@ -0,0 +1,129 @@
+package com.example.musicplayer.service;
+
+import com.example.musicplayer.model.Song;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 歌单列表的进程内一级缓存，位于 Redis 之前。
+ * 按歌曲总数限制容量（LRU 淘汰），失效消息通过 Redis 频道 {@link #INVALIDATION_CHANNEL} 广播到所有实例。
+ * 缓存的列表不可修改，其中的 Song 为所有请求共享，调用方只能读取或复制，不能写回。
+ */
+@Component
+public class SongListLocalCache {
+
+    public static final String INVALIDATION_CHANNEL = "song-cache-channel";
+    public static final String INVALIDATE_ALL = "*";
+
+    private final long maxSongs;
+    private final long ttlMillis;
+
+    // accessOrder = true，迭代顺序即 LRU 顺序
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long weightedSize;
+
+    // 每次失效自增；加载前记录，写入时比对，防止慢加载把失效前的旧数据写回来
+    private final AtomicLong generation = new AtomicLong();
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    public SongListLocalCache(@Value("${app.song-cache.local.max-songs:20000}") long maxSongs,
+                              @Value("${app.song-cache.local.ttl-minutes:30}") long ttlMinutes) {
+        this.maxSongs = maxSongs;
+        this.ttlMillis = TimeUnit.MINUTES.toMillis(ttlMinutes);
+    }
+
+    public synchronized List<Song> get(String cacheKey) {
+        Entry entry = entries.get(cacheKey);
+        if (entry == null) {
+            misses.increment();
+            return null;
+        }
+        if (entry.expiresAt() <= System.currentTimeMillis()) {
+            removeEntry(cacheKey, entry);
+            misses.increment();
+            return null;
+        }
+        hits.increment();
+        return entry.songs();
+    }
+
+    public long generation() {
+        return generation.get();
+    }
+
+    public synchronized void put(String cacheKey, List<Song> songs, long loadedAtGeneration) {
+        if (loadedAtGeneration != generation.get() || songs.size() > maxSongs) {
+            return;
+        }
+        Entry previous = entries.put(cacheKey,
+                new Entry(List.copyOf(songs), System.currentTimeMillis() + ttlMillis));
+        if (previous != null) {
+            weightedSize -= previous.songs().size();
+        }
+        weightedSize += songs.size();
+
+        Iterator<Map.Entry<String, Entry>> iterator = entries.entrySet().iterator();
+        while (weightedSize > maxSongs && iterator.hasNext()) {
+            Map.Entry<String, Entry> eldest = iterator.next();
+            if (eldest.getKey().equals(cacheKey)) {
+                continue;
+            }
+            iterator.remove();
+            weightedSize -= eldest.getValue().songs().size();
+            evictions.increment();
+        }
+    }
+
+    /**
+     * 仅清理本实例。跨实例失效请通过 {@link #INVALIDATION_CHANNEL} 发布 folderKey 或 {@link #INVALIDATE_ALL}。
+     */
+    public synchronized void invalidate(String folderKey) {
+        generation.incrementAndGet();
+        if (INVALIDATE_ALL.equals(folderKey)) {
+            entries.clear();
+            weightedSize = 0;
+            return;
+        }
+        String prefix = SongService.folderCachePrefix(folderKey);
+        entries.entrySet().removeIf(e -> {
+            if (e.getKey().startsWith(prefix)) {
+                weightedSize -= e.getValue().songs().size();
+                return true;
+            }
+            return false;
+        });
+    }
+
+    public synchronized Map<String, Object> stats() {
+        long hitCount = hits.sum();
+        long missCount = misses.sum();
+        long total = hitCount + missCount;
+        return Map.of(
+                "hits", hitCount,
+                "misses", missCount,
+                "evictions", evictions.sum(),
+                "hitRate", total == 0 ? 0.0 : (double) hitCount / total,
+                "entries", entries.size(),
+                "songs", weightedSize,
+                "maxSongs", maxSongs);
+    }
+
+    private void removeEntry(String cacheKey, Entry entry) {
+        entries.remove(cacheKey);
+        weightedSize -= entry.songs().size();
+    }
+
+    private record Entry(List<Song> songs, long expiresAt) {
+    }
+}
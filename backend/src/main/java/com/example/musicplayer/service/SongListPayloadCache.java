@@ -0,0 +1,96 @@
+package com.example.musicplayer.service;
+
+import com.example.musicplayer.model.Song;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.stereotype.Component;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * 缓存 /api/public/songs/get 已序列化、已 GZIP 的响应体。
+ * 以歌单版本号（见 {@link FolderVersionService}）为准：版本不变时直接返回字节，不再查歌单、修正票数或执行 Jackson + Deflater。
+ */
+@Component
+public class SongListPayloadCache {
+
+    // 与 Redis 歌单缓存 TTL 一致：响应里的签名 URL 最多再"老"6 小时，OssUtil 启动时校验签名刷新余量大于该值
+    static final long MAX_AGE_HOURS = 6;
+    private static final long MAX_AGE_MILLIS = TimeUnit.HOURS.toMillis(MAX_AGE_HOURS);
+
+    private final ObjectMapper objectMapper;
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder rebuilds = new LongAdder();
+
+    public SongListPayloadCache(ObjectMapper objectMapper) {
+        this.objectMapper = objectMapper;
+    }
+
+    /**
+     * @param version 调用方必须在加载歌单之前读取，保证缓存内容不旧于该版本
+     */
+    public Payload render(String variantKey, String version, Supplier<List<Song>> loader) {
+        Entry entry = entries.get(variantKey);
+        if (entry != null && entry.version().equals(version)
+                && System.currentTimeMillis() - entry.builtAt() < MAX_AGE_MILLIS) {
+            hits.increment();
+            return entry.payload();
+        }
+        Payload payload = serialize(loader.get());
+        entries.put(variantKey, new Entry(version, System.currentTimeMillis(), payload));
+        rebuilds.increment();
+        return payload;
+    }
+
+    public void invalidate(String folderKey) {
+        if (SongListLocalCache.INVALIDATE_ALL.equals(folderKey)) {
+            entries.clear();
+            return;
+        }
+        String prefix = SongService.folderCachePrefix(folderKey);
+        entries.keySet().removeIf(key -> key.startsWith(prefix));
+    }
+
+    public Map<String, Object> stats() {
+        long bytes = entries.values().stream()
+                .mapToLong(e -> e.payload().json().length + e.payload().gzip().length)
+                .sum();
+        return Map.of(
+                "hits", hits.sum(),
+                "rebuilds", rebuilds.sum(),
+                "entries", entries.size(),
+                "bytes", bytes);
+    }
+
+    private Payload serialize(List<Song> songs) {
+        try {
+            byte[] json = objectMapper.writeValueAsBytes(songs);
+            ByteArrayOutputStream buffer = new ByteArrayOutputStream(Math.max(256, json.length / 4));
+            try (GZIPOutputStream gzip = new GZIPOutputStream(buffer)) {
+                gzip.write(json);
+            }
+            return new Payload(json, buffer.toByteArray());
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Failed to serialize song list", e);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    public record Payload(byte[] json, byte[] gzip) {
+    }
+
+    private record Entry(String version, long builtAt, Payload payload) {
+    }
+}
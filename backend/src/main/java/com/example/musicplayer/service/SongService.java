@@ -2,105 +2,394 @@ package com.example.musicplayer.service;
 
 import com.aliyun.oss.model.OSSObjectSummary;
 import com.example.musicplayer.dto.FolderSongCount;
+import com.example.musicplayer.dto.SongPage;
+import com.example.musicplayer.dto.TrendingSong;
 import com.example.musicplayer.model.Song;
+import com.example.musicplayer.model.SongFolder;
 import com.example.musicplayer.repository.SongRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.data.redis.core.RedisTemplate;
 import org.springframework.data.redis.core.StringRedisTemplate;
 import org.springframework.stereotype.Service;
 
+import java.nio.charset.StandardCharsets;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 
+@Slf4j
 @Service
 public class SongService {
 
     private static final String DEFAULT_FOLDER_KEY = "ha_ji_mi";
+    private static final String FOLDER_CACHE_PREFIX = "songs:folder:";
+    private static final String CURSOR_VERSION = "v1:";
+    private static final int MAX_PAGE_SIZE = 200;
 
     private final OssUtil ossUtil;
     private final SongRepository songRepository;
-    private final RedisTemplate<String, Object> redisTemplate;
+    private final RedisTemplate<String, byte[]> songListRedisTemplate;
+    private final SongListCodec songListCodec;
+    private final SongListLoadCoordinator loadCoordinator;
     private final StringRedisTemplate stringRedisTemplate;
+    private final SongListLocalCache localCache;
+    private final SongListPayloadCache payloadCache;
+    private final FolderVersionService folderVersions;
+    private final SongFolderRegistry folderRegistry;
+    private final FolderSongCountCache folderSongCounts;
+    private final PlayCountBuffer playCountBuffer;
+    private final ListenerStatsService listenerStats;
+    private final TrendingService trendingService;
+    private final VoteRedisProjector voteProjector;
+    private final SongIdIndex songIdIndex;
+    private final long staleWindowMillis;
 
-    private final Map<String, String> AVAILABLE_FOLDERS = Map.of(
-            "ha_ji_mi", "哈基米",
-            "dian_gun", "溜冰场",
-            "da_si_ma", "大司马",
-            "ding_zhen", "丁真",
-            "dxl", "东洋雪莲",
-            "DDF", "哲学",
-            "true_music", "真正的音乐");
+    // songId -> 歌单/对象键，列表加载时顺带填充，避免投票、按需签名时再访问数据库
+    private final Map<Long, SongRef> songRefs = new ConcurrentHashMap<>();
 
     public SongService(OssUtil ossUtil, SongRepository songRepository,
-            RedisTemplate<String, Object> jsonRedisTemplate,
-            org.springframework.data.redis.core.StringRedisTemplate stringRedisTemplate) {
+            RedisTemplate<String, byte[]> songListRedisTemplate,
+            SongListCodec songListCodec,
+            SongListLoadCoordinator loadCoordinator,
+            org.springframework.data.redis.core.StringRedisTemplate stringRedisTemplate,
+            SongListLocalCache localCache,
+            SongListPayloadCache payloadCache,
+            FolderVersionService folderVersions,
+            SongFolderRegistry folderRegistry,
+            FolderSongCountCache folderSongCounts,
+            PlayCountBuffer playCountBuffer,
+            ListenerStatsService listenerStats,
+            TrendingService trendingService,
+            VoteRedisProjector voteProjector,
+            SongIdIndex songIdIndex,
+            @Value("${app.song-cache.stale-window-minutes:60}") long staleWindowMinutes) {
         this.ossUtil = ossUtil;
         this.songRepository = songRepository;
-        this.redisTemplate = jsonRedisTemplate;
+        this.songListRedisTemplate = songListRedisTemplate;
+        this.songListCodec = songListCodec;
+        this.loadCoordinator = loadCoordinator;
         this.stringRedisTemplate = stringRedisTemplate;
+        this.localCache = localCache;
+        this.payloadCache = payloadCache;
+        this.folderVersions = folderVersions;
+        this.folderRegistry = folderRegistry;
+        this.folderSongCounts = folderSongCounts;
+        this.playCountBuffer = playCountBuffer;
+        this.listenerStats = listenerStats;
+        this.trendingService = trendingService;
+        this.voteProjector = voteProjector;
+        this.songIdIndex = songIdIndex;
+        this.staleWindowMillis = TimeUnit.MINUTES.toMillis(staleWindowMinutes);
     }
 
-    public void incrementPlayCount(Long songId) {
-        songRepository.incrementPlayCount(songId);
+    static String folderCachePrefix(String folderKey) {
+        return FOLDER_CACHE_PREFIX + folderKey + ":";
     }
 
-    public List<FolderSongCount> getFolderSongCounts() {
-        return AVAILABLE_FOLDERS.entrySet().stream()
-                .map(entry -> {
-                    String prefix = "music/" + entry.getValue() + "/";
-                    long count = songRepository.countActiveSongsByPrefix(prefix);
-                    return new FolderSongCount(entry.getKey(), entry.getValue(), count);
-                })
-                .collect(Collectors.toList());
+    /**
+     * 只记入内存缓冲，由 PlayCountFlushTask 批量写库；不存在或已删除的歌曲直接忽略，避免缓冲被任意 id 撑大。
+     * 未缓存的 id 先经 {@link SongIdIndex#isActive} 过滤，查库次数只随不同的有效歌曲数增长，与播放次数和伪造的 id 无关
+     *
+     * @param listenerId 用于独立听众统计的用户/会话标识
+     */
+    public void incrementPlayCount(Long songId, String listenerId) {
+        if (!songRefs.containsKey(songId) && !songIdIndex.isActive(songId)) {
+            return;
+        }
+        SongRef ref = findSongRef(songId);
+        if (ref == null) {
+            return;
+        }
+        playCountBuffer.record(songId);
+        listenerStats.recordPlay(songId, ref.folderKey(), listenerId);
+        trendingService.recordPlay(ref.folderKey(), songId);
+    }
+
+    /**
+     * 歌单内"最近热门"前 limit 首：只按主键取排行里的这几首歌，票数用 HMGET 只取这几首，
+     * 开销与 limit 成正比，与歌单大小无关；已删除或已不属于该歌单的歌曲跳过
+     */
+    public List<TrendingSong> getTrendingSongs(String folderKey, int limit) {
+        String normalizedFolderKey = normalizeFolderKey(folderKey);
+        SongFolder folder = folderRegistry.require(normalizedFolderKey);
+        // 多取几首，抵消排行中已删除的歌曲
+        Map<Long, Double> scores = trendingService.top(normalizedFolderKey, limit + 10);
+        if (scores.isEmpty()) {
+            return List.of();
+        }
+        Map<Long, Song> songsById = new HashMap<>();
+        for (Song song : songRepository.findAllById(scores.keySet())) {
+            rememberSong(song);
+            if (song.getIsDeleted() == 0 && folder.getId().equals(song.getFolderId())) {
+                songsById.put(song.getId(), song);
+            }
+        }
+        List<Song> songs = new ArrayList<>(limit);
+        List<Double> songScores = new ArrayList<>(limit);
+        for (Map.Entry<Long, Double> entry : scores.entrySet()) {
+            Song song = songsById.get(entry.getKey());
+            if (song != null && songs.size() < limit) {
+                songs.add(song);
+                songScores.add(entry.getValue());
+            }
+        }
+        hydratePageVoteCounts(songs, normalizedFolderKey);
+        List<TrendingSong> result = new ArrayList<>(songs.size());
+        for (int i = 0; i < songs.size(); i++) {
+            result.add(new TrendingSong(songs.get(i), songScores.get(i)));
+        }
+        return result;
+    }
+
+    public long compactTrending() {
+        return trendingService.compact(folderRegistry.all().stream().map(SongFolder::getFolderKey).toList());
+    }
+
+    public long countSongListeners(Long songId, int days) {
+        return listenerStats.countSongListeners(songId, days);
     }
 
-    @SuppressWarnings("unchecked")
+    public long countFolderListeners(String folderKey, int days) {
+        String normalizedFolderKey = normalizeFolderKey(folderKey);
+        folderRegistry.require(normalizedFolderKey);
+        return listenerStats.countFolderListeners(normalizedFolderKey, days);
+    }
+
+    /**
+     * @param eTag 由 {@link #getFolderSongCountsETag} 在本次请求开始时取得，版本不变时直接返回内存结果
+     */
+    public List<FolderSongCount> getFolderSongCounts(String eTag) {
+        return folderSongCounts.getCounts(eTag);
+    }
+
+    /**
+     * 歌单响应的版本标识，只读一次 Redis 版本号，不查数据库、不签名、不序列化。
+     * 懒签名（-lazy）变体的内容完全由版本号决定，直接作为强 ETag；带 URL 的变体只用作响应体缓存的版本，
+     * 不能下发给客户端，否则安静歌单的版本长期不变，客户端会一直 304 并重放已过期的签名 URL。
+     */
+    public String getSongsETag(String folderKey, boolean includeDeleted, boolean withUrl) {
+        String normalizedFolderKey = normalizeFolderKey(folderKey);
+        folderRegistry.require(normalizedFolderKey);
+        return "songs-" + normalizedFolderKey + "-" + (includeDeleted ? "all" : "active")
+                + (withUrl ? "" : "-lazy") + "-" + folderVersions.folderTag(normalizedFolderKey);
+    }
+
+    public String getFolderSongCountsETag() {
+        return "folder-counts-" + folderVersions.catalogTag();
+    }
+
+    /**
+     * 与 {@link #getSongs} / {@link #getSongMetadata} 相同的数据，但返回缓存的已序列化/已压缩响应体
+     *
+     * @param eTag 由 {@link #getSongsETag} 在本次请求开始时取得
+     */
+    public SongListPayloadCache.Payload getSongsPayload(String folderKey, boolean includeDeleted, boolean withUrl,
+            String eTag) {
+        String variantKey = cacheKey(normalizeFolderKey(folderKey), includeDeleted) + (withUrl ? ":signed" : ":lazy");
+        return payloadCache.render(variantKey, eTag,
+                () -> withUrl ? getSongs(folderKey, includeDeleted) : getSongMetadata(folderKey, includeDeleted));
+    }
+
+    /**
+     * 歌单列表，每首歌都带签名 URL（旧客户端使用的模式）
+     */
     public List<Song> getSongs(String folderKey, boolean includeDeleted) {
+        // getSongMetadata 返回的已是本次请求的副本，可以直接写入 URL
+        List<Song> songs = getSongMetadata(folderKey, includeDeleted);
+        for (Song song : songs) {
+            song.setUrl(ossUtil.buildSignedUrl(song.getKey()));
+        }
+        return songs;
+    }
+
+    /**
+     * 歌单列表，不含 url 字段；播放时通过 /api/public/songs/stream/{songId} 按需签名。
+     * 缓存中只保存元数据，签名交给 {@link OssUtil} 的签名缓存。
+     * 缓存中的 Song 由所有请求共享、视为只读，返回的是逐首复制后再覆盖票数的副本。
+     */
+    public List<Song> getSongMetadata(String folderKey, boolean includeDeleted) {
         String normalizedFolderKey = normalizeFolderKey(folderKey);
-        String folderChineseName = getFolderChineseName(normalizedFolderKey);
-        String prefix = "music/" + folderChineseName + "/";
-        String cacheKey = "songs:folder:" + normalizedFolderKey + (includeDeleted ? ":all" : ":active");
+        SongFolder folder = folderRegistry.require(normalizedFolderKey);
+        String cacheKey = cacheKey(normalizedFolderKey, includeDeleted);
+
+        // 0. 查本地一级缓存，命中时不读取 Redis 中的歌单元数据
+        List<Song> localSongs = localCache.get(cacheKey);
+        if (localSongs != null) {
+            return hydratedCopies(localSongs, normalizedFolderKey);
+        }
+        long generation = localCache.generation();
+        CacheKeys keys = cacheKeys(normalizedFolderKey, includeDeleted);
 
         // 1. 查缓存
-        List<Song> cachedSongs = (List<Song>) redisTemplate.opsForValue().get(cacheKey);
-        if (cachedSongs != null) {
-            // 缓存命中，虽然缓存里有 Song 数据，但缓存里的点赞数可能是旧的(即使缓存只存6小时)
-            // 所以我们需要遍历缓存里的 Song，用 Redis 里的最新票数覆盖一下
-            hydrateSongVoteCounts(cachedSongs);
-            return cachedSongs;
+        List<Song> cachedSongs = readRedisCache(folder, keys, includeDeleted, generation);
+        if (cachedSongs == null) {
+            // 2. 缓存未命中，同一缓存键只由一个请求查数据库，其余请求等待同一结果
+            cachedSongs = loadCoordinator.load(keys.redis(),
+                    () -> readRedisCache(folder, keys, includeDeleted, generation),
+                    () -> loadFromDatabase(folder, keys, includeDeleted, generation));
         }
+        return hydratedCopies(cachedSongs, normalizedFolderKey);
+    }
 
-        // 2. 缓存未命中，查数据库
-        List<Song> dbSongs = songRepository.findByKeyStartingWith(prefix);
+    // 缓存里的点赞数可能是旧的(即使缓存只存6小时)，在副本上用 Redis 里的最新票数覆盖一下
+    private List<Song> hydratedCopies(List<Song> cachedSongs, String folderKey) {
+        List<Song> songs = new ArrayList<>(cachedSongs.size());
+        for (Song song : cachedSongs) {
+            songs.add(copyOf(song));
+        }
+        hydrateSongVoteCounts(songs, folderKey);
+        return songs;
+    }
 
-        if (!includeDeleted) {
-            dbSongs = dbSongs.stream()
-                    .filter(s -> s.getIsDeleted() == 0)
-                    .collect(Collectors.toList());
+    private List<Song> readRedisCache(SongFolder folder, CacheKeys keys, boolean includeDeleted, long generation) {
+        // 一次往返同时取值和剩余 TTL
+        List<Object> results = songListRedisTemplate.executePipelined(
+                (org.springframework.data.redis.core.RedisCallback<Object>) connection -> {
+                    byte[] rawKey = keys.redis().getBytes(StandardCharsets.UTF_8);
+                    connection.stringCommands().get(rawKey);
+                    connection.keyCommands().pTtl(rawKey);
+                    return null;
+                });
+        List<Song> cachedSongs;
+        try {
+            cachedSongs = songListCodec.decode((byte[]) results.get(0));
+        } catch (RuntimeException e) {
+            // 截断或损坏的缓存值按未命中处理并删除，避免在 TTL 到期前每次请求都失败
+            log.warn("【歌单缓存】缓存值无法解码，删除后回源: {}", keys.redis(), e);
+            songListRedisTemplate.delete(keys.redis());
+            return null;
+        }
+        if (cachedSongs == null) {
+            return null;
+        }
+        // 旧版本写入的缓存带有签名 URL，这里统一去掉
+        for (Song song : cachedSongs) {
+            song.setUrl(null);
         }
+        rememberSongs(cachedSongs, folder.getFolderKey());
+        localCache.put(keys.local(), cachedSongs, generation);
+        if (results.get(1) instanceof Long ttl && ttl >= 0 && ttl < staleWindowMillis) {
+            // 临近过期：本次仍返回旧值，后台重建
+            loadCoordinator.refreshInBackground(keys.redis(), () -> reloadCache(folder, keys, includeDeleted));
+        }
+        return cachedSongs;
+    }
 
-        for (Song song : dbSongs) {
-            song.setUrl(ossUtil.buildSignedUrl(song.getKey()));
+    private void reloadCache(SongFolder folder, CacheKeys keys, boolean includeDeleted) {
+        loadFromDatabase(folder, keys, includeDeleted, localCache.generation());
+    }
+
+    /**
+     * 定时预热：缺失或进入过期窗口的公开歌单缓存直接重建，请求不必为 TTL 到期买单
+     *
+     * @return 本次重建的歌单数
+     */
+    public int warmUpFolderCaches() {
+        int refreshed = 0;
+        for (SongFolder folder : folderRegistry.all()) {
+            CacheKeys keys = cacheKeys(folder.getFolderKey(), false);
+            Long ttl = songListRedisTemplate.getExpire(keys.redis(), TimeUnit.MILLISECONDS);
+            if (ttl != null && ttl >= staleWindowMillis) {
+                continue;
+            }
+            if (loadCoordinator.refreshNow(keys.redis(), () -> reloadCache(folder, keys, false))) {
+                refreshed++;
+            }
         }
+        return refreshed;
+    }
 
-        // 4. 实时修正票数：用 Redis 里的最新票数覆盖 DB/缓存里的旧数据
-        hydrateSongVoteCounts(dbSongs);
+    private List<Song> loadFromDatabase(SongFolder folder, CacheKeys keys, boolean includeDeleted, long generation) {
+        List<Song> dbSongs = includeDeleted
+                ? songRepository.findByFolderIdOrderById(folder.getId())
+                : songRepository.findByFolderIdAndIsDeletedOrderById(folder.getId(), 0);
+        rememberSongs(dbSongs, folder.getFolderKey());
 
-        // 5. 写入缓存 (设置过期时间为 6 小时，远小于 OSS 签名的 24 小时，确保取出的 URL 总是有效的)
+        // 写入缓存 (6 小时)
         if (!dbSongs.isEmpty()) {
-            redisTemplate.opsForValue().set(cacheKey, dbSongs, 6, TimeUnit.HOURS);
+            songListRedisTemplate.opsForValue().set(keys.redis(), songListCodec.encode(dbSongs), 6, TimeUnit.HOURS);
+            localCache.put(keys.local(), dbSongs, generation);
         }
-
         return dbSongs;
     }
 
+    /**
+     * 按 id 游标分页读取歌单，只对返回的这一页签名和修正票数
+     *
+     * @param cursor 上一页返回的 nextCursor，首页传 null
+     */
+    public SongPage getSongPage(String folderKey, String cursor, int size, boolean includeDeleted, boolean withUrl) {
+        String normalizedFolderKey = normalizeFolderKey(folderKey);
+        SongFolder folder = folderRegistry.require(normalizedFolderKey);
+        int pageSize = Math.clamp(size, 1, MAX_PAGE_SIZE);
+        long afterId = decodeCursor(cursor);
+
+        // 多取一条用于判断是否还有下一页
+        List<Song> songs = songRepository.findPageByFolderAfterId(folder.getId(), afterId, includeDeleted,
+                PageRequest.of(0, pageSize + 1));
+        String nextCursor = null;
+        if (songs.size() > pageSize) {
+            songs = new ArrayList<>(songs.subList(0, pageSize));
+            nextCursor = encodeCursor(songs.getLast().getId());
+        }
+        rememberSongs(songs, normalizedFolderKey);
+        if (withUrl) {
+            for (Song song : songs) {
+                song.setUrl(ossUtil.buildSignedUrl(song.getKey()));
+            }
+        }
+        hydratePageVoteCounts(songs, normalizedFolderKey);
+        return new SongPage(songs, nextCursor);
+    }
+
+    private String encodeCursor(long lastId) {
+        return Base64.getUrlEncoder().withoutPadding()
+                .encodeToString((CURSOR_VERSION + lastId).getBytes(StandardCharsets.UTF_8));
+    }
+
+    private long decodeCursor(String cursor) {
+        if (cursor == null || cursor.isBlank()) {
+            return 0L;
+        }
+        try {
+            String decoded = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            if (decoded.startsWith(CURSOR_VERSION)) {
+                return Long.parseLong(decoded.substring(CURSOR_VERSION.length()));
+            }
+        } catch (IllegalArgumentException ignored) {
+            // NumberFormatException 也是 IllegalArgumentException，统一按非法游标处理
+        }
+        throw new IllegalArgumentException("Invalid cursor: " + cursor);
+    }
+
+    /**
+     * 按需为单首歌签名，供 /stream/{songId} 重定向使用；歌曲不存在或已删除（且无权查看）时返回 null
+     */
+    public String getStreamUrl(Long songId, boolean includeDeleted) {
+        SongRef ref = findSongRef(songId);
+        if (ref == null || (ref.deleted() && !includeDeleted)) {
+            return null;
+        }
+        return ossUtil.buildSignedUrl(ref.objectKey());
+    }
+
     public void deleteSong(Long songId) {
         Optional<Song> songOpt = songRepository.findById(songId);
         if (songOpt.isPresent()) {
             Song song = songOpt.get();
+            boolean wasActive = song.getIsDeleted() == 0;
             song.setIsDeleted(1);
             songRepository.save(song);
-            evictAllFolderCaches();
+            rememberSong(song);
+            songIdIndex.markDeleted(songId);
+            if (wasActive) {
+                folderSongCounts.adjust(folderKeyOf(song), -1);
+            }
+            evictFolderCacheOf(song);
+            bumpCatalogOf(song);
         }
     }
 
@@ -108,47 +397,152 @@ public class SongService {
         Optional<Song> songOpt = songRepository.findById(songId);
         if (songOpt.isPresent()) {
             Song song = songOpt.get();
+            boolean wasDeleted = song.getIsDeleted() != 0;
             song.setIsDeleted(0);
             songRepository.save(song);
+            rememberSong(song);
+            songIdIndex.markActive(songId);
+            if (wasDeleted) {
+                folderSongCounts.adjust(folderKeyOf(song), 1);
+            }
+            evictFolderCacheOf(song);
+            bumpCatalogOf(song);
+        }
+    }
+
+    // 必须在缓存失效之后再推进版本，否则并发请求可能把旧歌单记在新版本号下
+    private void bumpCatalogOf(Song song) {
+        String folderKey = folderKeyOf(song);
+        if (folderKey != null) {
+            folderVersions.bumpCatalog(folderKey);
+        }
+    }
+
+    /**
+     * 查询歌曲所属歌单，优先使用内存映射，未命中时回退到数据库
+     */
+    public String findFolderKey(Long songId) {
+        SongRef ref = findSongRef(songId);
+        return ref == null ? null : ref.folderKey();
+    }
+
+    private SongRef findSongRef(Long songId) {
+        SongRef ref = songRefs.get(songId);
+        if (ref != null) {
+            return ref;
+        }
+        return songRepository.findById(songId)
+                .map(this::rememberSong)
+                .orElse(null);
+    }
+
+    private void rememberSongs(List<Song> songs, String folderKey) {
+        for (Song song : songs) {
+            songRefs.put(song.getId(), new SongRef(folderKey, song.getKey(), song.getIsDeleted() != 0));
+        }
+    }
+
+    private SongRef rememberSong(Song song) {
+        SongRef ref = new SongRef(folderKeyOf(song), song.getKey(), song.getIsDeleted() != 0);
+        songRefs.put(song.getId(), ref);
+        return ref;
+    }
+
+    private static Song copyOf(Song song) {
+        Song copy = new Song();
+        copy.setId(song.getId());
+        copy.setName(song.getName());
+        copy.setKey(song.getKey());
+        copy.setFolderId(song.getFolderId());
+        copy.setLikeCount(song.getLikeCount());
+        copy.setDislikeCount(song.getDislikeCount());
+        copy.setPlayCount(song.getPlayCount());
+        copy.setIsDeleted(song.getIsDeleted());
+        copy.setCreatedAt(song.getCreatedAt());
+        copy.setUpdatedAt(song.getUpdatedAt());
+        return copy;
+    }
+
+    private String folderKeyOf(Song song) {
+        SongFolder folder = folderRegistry.findById(song.getFolderId());
+        if (folder == null) {
+            folder = folderRegistry.findByObjectKey(song.getKey());
+        }
+        return folder == null ? null : folder.getFolderKey();
+    }
+
+    private void evictFolderCacheOf(Song song) {
+        String folderKey = folderKeyOf(song);
+        if (folderKey == null) {
             evictAllFolderCaches();
+        } else {
+            evictFolderCache(folderKey);
         }
     }
 
+    /**
+     * 推进该歌单的缓存代数，旧键不再被读取并随 TTL 过期，O(1)
+     */
+    private void evictFolderCache(String folderKey) {
+        folderVersions.bumpCacheGenerations(List.of(folderKey));
+        publishInvalidation(folderKey);
+    }
+
     private void evictAllFolderCaches() {
-        Set<String> keys = redisTemplate.execute((org.springframework.data.redis.core.RedisCallback<Set<String>>) connection -> {
-            Set<String> result = new HashSet<>();
-            org.springframework.data.redis.serializer.RedisSerializer<String> serializer =
-                    redisTemplate.getStringSerializer();
-            try (var cursor = connection.scan(org.springframework.data.redis.core.ScanOptions.scanOptions()
-                    .match("songs:folder:*").count(500).build())) {
-                while (cursor.hasNext()) {
-                    result.add(serializer.deserialize(cursor.next()));
-                }
-            } catch (Exception e) {
-                throw new IllegalStateException("Failed to scan song cache keys", e);
-            }
-            return result;
-        });
-        if (keys != null && !keys.isEmpty()) {
-            redisTemplate.delete(keys);
+        folderVersions.bumpCacheGenerations(
+                folderRegistry.all().stream().map(SongFolder::getFolderKey).toList());
+        publishInvalidation(SongListLocalCache.INVALIDATE_ALL);
+    }
+
+    private void publishInvalidation(String folderKey) {
+        invalidateLocal(folderKey);
+        stringRedisTemplate.convertAndSend(SongListLocalCache.INVALIDATION_CHANNEL, folderKey);
+    }
+
+    /**
+     * 清理本实例的歌单缓存、响应体缓存和歌曲映射，由失效消息在每个实例上调用。
+     * 映射中的删除标记只有处理删除/恢复请求的实例会原地更新，其他实例靠这里丢弃旧值，下次按需从数据库读取。
+     */
+    public void invalidateLocal(String folderKey) {
+        localCache.invalidate(folderKey);
+        payloadCache.invalidate(folderKey);
+        if (SongListLocalCache.INVALIDATE_ALL.equals(folderKey)) {
+            songRefs.clear();
+            // 全量失效在 OSS 同步结束时发布，同步可能登记了新歌单
+            folderRegistry.refresh();
+        } else {
+            songRefs.values().removeIf(ref -> folderKey.equals(ref.folderKey()));
         }
     }
 
+    public Map<String, Object> getCacheStats() {
+        return Map.of(
+                "localFolderCache", localCache.stats(),
+                "responsePayloadCache", payloadCache.stats(),
+                "cacheMissLoads", loadCoordinator.stats(),
+                "signedUrlCache", ossUtil.signedUrlStats());
+    }
+
+    public Map<String, Object> benchmarkSongListCodec(String folderKey, int rounds) {
+        return songListCodec.compare(getSongMetadata(folderKey, true), rounds);
+    }
+
     /**
-     * 同步指定文件夹的 OSS 文件到数据库
+     * 同步指定文件夹的 OSS 文件到数据库，并回填旧数据的 folder_id
      */
     public void syncSongsFromOss(String folderKey) {
-        String folderChineseName = AVAILABLE_FOLDERS.get(folderKey);
-        if (folderChineseName == null) {
+        SongFolder folder = folderRegistry.findByKey(folderKey);
+        if (folder == null) {
             return;
         }
-        String prefix = "music/" + folderChineseName + "/";
+        String prefix = folder.getOssPrefix();
 
         // 1. OSS 列出文件
         List<OSSObjectSummary> ossFiles = ossUtil.listFilesByPrefixAndSuffix(prefix, ".mp3");
 
-        // 2. 数据库查出已有文件
-        List<Song> dbSongs = songRepository.findByKeyStartingWith(prefix);
+        // 2. 回填 folder_id 后按歌单查出已有文件
+        int backfilled = songRepository.assignFolderByPrefix(folder.getId(), prefix);
+        List<Song> dbSongs = songRepository.findByFolderIdOrderById(folder.getId());
         Set<String> dbKeys = dbSongs.stream().map(Song::getKey).collect(Collectors.toSet());
 
         // 3. 找出新文件
@@ -160,6 +554,7 @@ public class SongService {
                 String filename = ossUtil.extractFilename(key);
                 song.setName(filename);
                 song.setKey(key);
+                song.setFolderId(folder.getId());
                 song.setLikeCount(0);
                 song.setDislikeCount(0);
                 song.setPlayCount(0);
@@ -171,52 +566,109 @@ public class SongService {
         // 4. 保存新文件
         if (!newSongs.isEmpty()) {
             songRepository.saveAll(newSongs);
-            // 只有当有新歌时才清除缓存
-            redisTemplate.delete("songs:folder:" + folderKey + ":all");
-            redisTemplate.delete("songs:folder:" + folderKey + ":active");
+            newSongs.forEach(song -> songIdIndex.markActive(song.getId()));
+            folderSongCounts.adjust(folderKey, newSongs.size());
+        }
+        // 只有当歌单内容变化时才清除缓存
+        if (!newSongs.isEmpty() || backfilled > 0) {
+            evictFolderCache(folderKey);
+            folderVersions.bumpCatalog(folderKey);
         }
     }
 
     public void syncAllSongs() {
         try {
-            for (String folderKey : AVAILABLE_FOLDERS.keySet()) {
-                syncSongsFromOss(folderKey);
+            folderRegistry.discoverFromOss();
+            for (SongFolder folder : folderRegistry.all()) {
+                syncSongsFromOss(folder.getFolderKey());
             }
+            // 回填 folder_id 或新登记歌单后增量计数不完整，全量同步结束时统一重算一次（单条分组查询）
+            folderSongCounts.seed();
+            songIdIndex.rebuild();
         } finally {
             evictAllFolderCaches();
         }
     }
 
-    private void hydrateSongVoteCounts(List<Song> songs) {
+    /**
+     * 整个歌单：一次 HGETALL 读取歌单级票数快照；快照尚未重建时退回逐首 SCARD
+     */
+    private void hydrateSongVoteCounts(List<Song> songs, String folderKey) {
         if (songs.isEmpty()) {
             return;
         }
+        Map<Object, Object> packed = stringRedisTemplate.opsForHash()
+                .entries(VoteRedisProjector.folderVotesKey(folderKey));
+        if (!packed.containsKey(VoteRedisProjector.FOLDER_VOTES_READY_FIELD)) {
+            hydrateFromVoteSets(songs);
+            return;
+        }
+        for (Song song : songs) {
+            applyCounts(song, packed.get(String.valueOf(song.getId())));
+        }
+    }
+
+    /**
+     * 分页：只用 HMGET 取本页歌曲的快照
+     */
+    private void hydratePageVoteCounts(List<Song> songs, String folderKey) {
+        if (songs.isEmpty()) {
+            return;
+        }
+        List<Object> fields = new ArrayList<>(songs.size() + 1);
+        fields.add(VoteRedisProjector.FOLDER_VOTES_READY_FIELD);
+        for (Song song : songs) {
+            fields.add(String.valueOf(song.getId()));
+        }
+        List<Object> packed = stringRedisTemplate.opsForHash()
+                .multiGet(VoteRedisProjector.folderVotesKey(folderKey), fields);
+        if (packed.get(0) == null) {
+            hydrateFromVoteSets(songs);
+            return;
+        }
+        for (int i = 0; i < songs.size(); i++) {
+            applyCounts(songs.get(i), packed.get(i + 1));
+        }
+    }
+
+    private void applyCounts(Song song, Object packed) {
+        VoteRedisProjector.VoteCounts counts = VoteRedisProjector.unpackCounts(packed);
+        song.setLikeCount(counts.likes());
+        song.setDislikeCount(counts.dislikes());
+    }
+
+    private void hydrateFromVoteSets(List<Song> songs) {
         List<Object> counts = stringRedisTemplate.executePipelined((org.springframework.data.redis.core.RedisCallback<Object>) connection -> {
-            org.springframework.data.redis.serializer.RedisSerializer<String> serializer =
-                    stringRedisTemplate.getStringSerializer();
             for (Song song : songs) {
                 if (song.getId() != null) {
-                    connection.setCommands().sCard(serializer.serialize("likes:" + song.getId()));
-                    connection.setCommands().sCard(serializer.serialize("dislikes:" + song.getId()));
+                    voteProjector.appendCounts(connection, song.getId());
                 }
             }
             return null;
         });
-        int index = 0;
+        int width = voteProjector.countCommands();
+        int offset = 0;
         for (Song song : songs) {
             if (song.getId() == null) {
                 continue;
             }
-            song.setLikeCount(readCount(counts, index++));
-            song.setDislikeCount(readCount(counts, index++));
+            long[] songCounts = voteProjector.parseCounts(counts, offset);
+            offset += width;
+            song.setLikeCount((int) songCounts[0]);
+            song.setDislikeCount((int) songCounts[1]);
         }
     }
 
-    private int readCount(List<Object> counts, int index) {
-        if (index >= counts.size() || !(counts.get(index) instanceof Number number)) {
-            return 0;
-        }
-        return number.intValue();
+    // 本地缓存键，不含代数：本地缓存通过失效消息清理
+    private String cacheKey(String normalizedFolderKey, boolean includeDeleted) {
+        return folderCachePrefix(normalizedFolderKey) + (includeDeleted ? "all" : "active");
+    }
+
+    // Redis 缓存键：songs:folder:<folderKey>:g<代数>:<all|active>
+    private CacheKeys cacheKeys(String normalizedFolderKey, boolean includeDeleted) {
+        return new CacheKeys(cacheKey(normalizedFolderKey, includeDeleted),
+                folderCachePrefix(normalizedFolderKey) + "g" + folderVersions.cacheGeneration(normalizedFolderKey)
+                        + ":" + (includeDeleted ? "all" : "active"));
     }
 
     private String normalizeFolderKey(String folderKey) {
@@ -226,11 +678,9 @@ public class SongService {
         return folderKey;
     }
 
-    private String getFolderChineseName(String folderKey) {
-        String folderChineseName = AVAILABLE_FOLDERS.get(folderKey);
-        if (folderChineseName == null) {
-            throw new IllegalArgumentException("Invalid folder key: " + folderKey);
-        }
-        return folderChineseName;
+    private record SongRef(String folderKey, String objectKey, boolean deleted) {
+    }
+
+    private record CacheKeys(String local, String redis) {
     }
 }
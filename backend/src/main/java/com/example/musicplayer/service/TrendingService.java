@@ -0,0 +1,135 @@
+package com.example.musicplayer.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ZSetOperations;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * "最近热门"排行：每个歌单一个 Redis ZSET，播放和投票事件按时间指数衰减计分（forward decay）。
+ * <p>
+ * 事件权重乘以 2^((now - epoch) / halfLife) 后 ZINCRBY，越新的事件分值越大，等价于旧分数随时间衰减，
+ * 写入和读取都不需要重算其他歌曲。定时压缩把基准时间 epoch 推到当前并整体缩放分数（ZUNIONSTORE WEIGHTS），
+ * 防止分值溢出，同时清理已经衰减到可以忽略的歌曲。
+ */
+@Service
+public class TrendingService {
+
+    private static final String KEY_PREFIX = "trending:folder:";
+    private static final String EPOCH_KEY = "trending:epoch";
+    // 压缩后低于该分值（约等于一次播放衰减 10 个半衰期）的歌曲移出排行
+    private static final String MIN_SCORE = "0.001";
+
+    private static final double PLAY_WEIGHT = 1.0;
+    private static final double LIKE_WEIGHT = 3.0;
+    private static final double DISLIKE_WEIGHT = -2.0;
+
+    private static final DefaultRedisScript<Long> INCREMENT_SCRIPT = new DefaultRedisScript<>(
+            "local epoch = redis.call('get', KEYS[2]) " +
+                    "if not epoch then epoch = ARGV[2]; redis.call('set', KEYS[2], epoch) end " +
+                    "local score = tonumber(ARGV[1]) * 2 ^ ((tonumber(ARGV[2]) - tonumber(epoch)) / tonumber(ARGV[3])) " +
+                    "redis.call('zincrby', KEYS[1], tostring(score), ARGV[4]) " +
+                    "return 1",
+            Long.class);
+
+    private static final DefaultRedisScript<Long> COMPACT_SCRIPT = new DefaultRedisScript<>(
+            "local epoch = redis.call('get', KEYS[1]) " +
+                    "if not epoch then redis.call('set', KEYS[1], ARGV[1]); return 0 end " +
+                    "local factor = tostring(2 ^ ((tonumber(epoch) - tonumber(ARGV[1])) / tonumber(ARGV[2]))) " +
+                    "for i = 2, #KEYS do " +
+                    "if redis.call('exists', KEYS[i]) == 1 then " +
+                    "redis.call('zunionstore', KEYS[i], 1, KEYS[i], 'WEIGHTS', factor) " +
+                    "redis.call('zremrangebyscore', KEYS[i], '-inf', ARGV[3]) " +
+                    "end " +
+                    "end " +
+                    "redis.call('set', KEYS[1], ARGV[1]) " +
+                    "return #KEYS - 1",
+            Long.class);
+
+    private final StringRedisTemplate redisTemplate;
+    private final long halfLifeMillis;
+
+    public TrendingService(StringRedisTemplate redisTemplate,
+                           @Value("${app.trending.half-life-hours:6}") long halfLifeHours) {
+        this.redisTemplate = redisTemplate;
+        this.halfLifeMillis = TimeUnit.HOURS.toMillis(halfLifeHours);
+    }
+
+    public void recordPlay(String folderKey, Long songId) {
+        record(folderKey, songId, PLAY_WEIGHT);
+    }
+
+    /**
+     * @param previousVote 变更前的投票（1 / -1 / null），只计入新旧投票的权重差
+     */
+    public void recordVote(String folderKey, Long songId, Integer previousVote, Integer newVote) {
+        double delta = voteWeight(newVote) - voteWeight(previousVote);
+        if (delta != 0) {
+            record(folderKey, songId, delta);
+        }
+    }
+
+    /**
+     * 取歌单前 limit 名，ZREVRANGE O(log N + K)；分值已换算到当前时刻
+     *
+     * @return songId -> 当前分值，按分值降序
+     */
+    public Map<Long, Double> top(String folderKey, int limit) {
+        Set<ZSetOperations.TypedTuple<String>> tuples =
+                redisTemplate.opsForZSet().reverseRangeWithScores(KEY_PREFIX + folderKey, 0, limit - 1);
+        Map<Long, Double> result = new LinkedHashMap<>();
+        if (tuples == null || tuples.isEmpty()) {
+            return result;
+        }
+        String epoch = redisTemplate.opsForValue().get(EPOCH_KEY);
+        double scale = epoch == null ? 1.0
+                : Math.pow(2, (Long.parseLong(epoch) - System.currentTimeMillis()) / (double) halfLifeMillis);
+        for (ZSetOperations.TypedTuple<String> tuple : tuples) {
+            if (tuple.getValue() != null && tuple.getScore() != null) {
+                result.put(Long.valueOf(tuple.getValue()), tuple.getScore() * scale);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * 把基准时间推到当前并缩放所有歌单的分值，调用方需持有任务锁
+     *
+     * @return 处理的歌单数
+     */
+    public long compact(Collection<String> folderKeys) {
+        List<String> keys = new ArrayList<>(folderKeys.size() + 1);
+        keys.add(EPOCH_KEY);
+        for (String folderKey : folderKeys) {
+            keys.add(KEY_PREFIX + folderKey);
+        }
+        Long compacted = redisTemplate.execute(COMPACT_SCRIPT, keys,
+                Long.toString(System.currentTimeMillis()), Long.toString(halfLifeMillis), MIN_SCORE);
+        return compacted == null ? 0 : compacted;
+    }
+
+    private void record(String folderKey, Long songId, double weight) {
+        if (folderKey == null) {
+            return;
+        }
+        redisTemplate.execute(INCREMENT_SCRIPT, List.of(KEY_PREFIX + folderKey, EPOCH_KEY),
+                Double.toString(weight), Long.toString(System.currentTimeMillis()),
+                Long.toString(halfLifeMillis), songId.toString());
+    }
+
+    private static double voteWeight(Integer vote) {
+        if (vote == null) {
+            return 0;
+        }
+        return vote > 0 ? LIKE_WEIGHT : vote < 0 ? DISLIKE_WEIGHT : 0;
+    }
+}
@@ -0,0 +1,64 @@
+package com.example.musicplayer.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 票数实时推送：投影成功的歌曲只在内存中登记，定时任务按周期合并，
+ * 一次 Pipeline 读出这些歌曲的最新票数后发布到 {@link #CHANNEL}，
+ * 各实例的 OnlineCountListener 再推给正在听该歌曲的 WebSocket 会话。
+ * 同一首歌在一个周期内无论被投多少次，都只推送一次当前票数。
+ */
+@Service
+public class VoteCountBroadcaster {
+
+    public static final String CHANNEL = "vote-count-channel";
+    private static final int READ_BATCH_SIZE = VoteService.MAX_BATCH_SONGS;
+
+    private final VoteRedisProjector redisProjector;
+    private final StringRedisTemplate redisTemplate;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    private final Set<Long> changed = ConcurrentHashMap.newKeySet();
+
+    public VoteCountBroadcaster(VoteRedisProjector redisProjector, StringRedisTemplate redisTemplate) {
+        this.redisProjector = redisProjector;
+        this.redisTemplate = redisTemplate;
+    }
+
+    public void markChanged(Long songId) {
+        changed.add(songId);
+    }
+
+    /**
+     * 发布上一个周期内票数有变化的歌曲
+     *
+     * @return 发布的歌曲数
+     */
+    public int flush() throws JsonProcessingException {
+        if (changed.isEmpty()) {
+            return 0;
+        }
+        List<Long> songIds = new ArrayList<>(changed);
+        // 逐个移除而非 clear，读取期间新登记的歌曲留到下个周期
+        songIds.forEach(changed::remove);
+        // songId -> {likes, dislikes}
+        Map<String, Map<String, Integer>> payload = new LinkedHashMap<>();
+        for (int from = 0; from < songIds.size(); from += READ_BATCH_SIZE) {
+            List<Long> batch = songIds.subList(from, Math.min(songIds.size(), from + READ_BATCH_SIZE));
+            redisProjector.read(batch, null).counts().forEach((songId, counts) -> payload.put(songId.toString(),
+                    Map.of("likes", (int) counts[0], "dislikes", (int) counts[1])));
+        }
+        redisTemplate.convertAndSend(CHANNEL, objectMapper.writeValueAsString(payload));
+        return payload.size();
+    }
+}
@@ -0,0 +1,161 @@
+package com.example.musicplayer.service;
+
+import com.example.musicplayer.model.VoteOutbox;
+import com.example.musicplayer.repository.VoteOutboxRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 投票投影发件箱（transactional outbox）。
+ * <p>
+ * 投票变更与 vote_outbox 条目在同一事务中写入；提交后请求线程立即尝试投影并删除条目，
+ * Redis 不可用时条目留在表中，由 {@link #drain} 定期按批重放（Pipeline），成功后删除。
+ * 定期全量重建因此只是修复手段，Redis 短暂故障后的票数会在下一个重放周期内恢复。
+ * <p>
+ * 同一用户对同一首歌的多条变更可能乱序到达 Redis（并发请求的即时投影、重放批次与即时投影交错），
+ * 投影脚本记录该用户对该歌曲已生效的最大条目 id，更早的条目不再覆盖；条目只在投影生效后，
+ * 按已生效的 id 删除不晚于它的条目。
+ */
+@Slf4j
+@Service
+public class VoteOutboxRelay {
+
+    private static final int BATCH_SIZE = 200;
+    // 早于该秒数的条目才由定时任务重放，避免与请求线程的即时投影重复
+    private static final long DRAIN_GRACE_SECONDS = 10;
+
+    private final VoteOutboxRepository outboxRepository;
+    private final VoteRedisProjector redisProjector;
+    private final TrendingService trendingService;
+    private final SongService songService;
+    private final VoteCountBroadcaster broadcaster;
+
+    private final LongAdder projected = new LongAdder();
+    private final LongAdder deferred = new LongAdder();
+    private final LongAdder replayed = new LongAdder();
+    private final LongAdder superseded = new LongAdder();
+
+    public VoteOutboxRelay(VoteOutboxRepository outboxRepository,
+                           VoteRedisProjector redisProjector,
+                           TrendingService trendingService,
+                           SongService songService,
+                           VoteCountBroadcaster broadcaster) {
+        this.outboxRepository = outboxRepository;
+        this.redisProjector = redisProjector;
+        this.trendingService = trendingService;
+        this.songService = songService;
+        this.broadcaster = broadcaster;
+    }
+
+    /**
+     * 必须在写 song_votes 的同一事务中调用
+     */
+    public VoteOutbox append(Long songId, Long userId, Integer vote, Integer previousVote) {
+        VoteOutbox entry = new VoteOutbox();
+        entry.setSongId(songId);
+        entry.setUserId(userId);
+        entry.setVote(vote);
+        entry.setPreviousVote(previousVote);
+        return outboxRepository.save(entry);
+    }
+
+    /**
+     * 事务提交后立即投影；失败时保留条目等待重放
+     */
+    public void projectNow(VoteOutbox entry) {
+        String folderKey;
+        try {
+            folderKey = songService.findFolderKey(entry.getSongId());
+            long applied = redisProjector.project(entry.getSongId(), entry.getUserId(), entry.getVote(), folderKey,
+                    entry.getId());
+            outboxRepository.deleteUpTo(entry.getUserId(), entry.getSongId(), applied);
+            if (applied > entry.getId()) {
+                superseded.increment();
+            }
+            projected.increment();
+            broadcaster.markChanged(entry.getSongId());
+        } catch (RuntimeException error) {
+            deferred.increment();
+            log.warn("【投票发件箱】即时投影失败，等待批量重放: songId={}, userId={}",
+                    entry.getSongId(), entry.getUserId(), error);
+            return;
+        }
+        recordTrending(entry, folderKey);
+    }
+
+    /**
+     * 按主键顺序分批重放积压条目，调用方需持有任务锁
+     *
+     * @return 本次重放的条目数
+     */
+    public int drain() {
+        int total = 0;
+        while (true) {
+            LocalDateTime before = LocalDateTime.now().minusSeconds(DRAIN_GRACE_SECONDS);
+            List<VoteOutbox> batch = outboxRepository.findPendingBefore(before, PageRequest.of(0, BATCH_SIZE));
+            if (batch.isEmpty()) {
+                return total;
+            }
+            replay(batch);
+            total += batch.size();
+            if (batch.size() < BATCH_SIZE) {
+                return total;
+            }
+        }
+    }
+
+    public Map<String, Object> stats() {
+        return Map.of(
+                "projected", projected.sum(),
+                "deferred", deferred.sum(),
+                "replayed", replayed.sum(),
+                "superseded", superseded.sum(),
+                "pending", outboxRepository.count());
+    }
+
+    private void replay(List<VoteOutbox> batch) {
+        // 投影写入的是绝对状态：同一用户对同一首歌只投影最新一条，热门分值的增量则逐条计入
+        Map<String, VoteOutbox> latest = new LinkedHashMap<>();
+        Map<Long, String> folderKeys = new LinkedHashMap<>();
+        for (VoteOutbox entry : batch) {
+            latest.put(entry.getUserId() + ":" + entry.getSongId(), entry);
+            folderKeys.computeIfAbsent(entry.getSongId(), songService::findFolderKey);
+        }
+        List<VoteRedisProjector.Projection> projections = new ArrayList<>(latest.size());
+        for (VoteOutbox entry : latest.values()) {
+            projections.add(redisProjector.projection(entry.getSongId(), entry.getUserId(),
+                    entry.getVote(), folderKeys.get(entry.getSongId()), entry.getId()));
+        }
+        List<Long> applied = redisProjector.projectBatch(projections);
+        int i = 0;
+        for (VoteOutbox entry : latest.values()) {
+            if (applied.get(i++) > entry.getId()) {
+                superseded.increment();
+            }
+        }
+        // 已生效的 id 不小于每对 (用户, 歌曲) 在本批中的最新条目，本批条目都可以删除；更新的条目不在本批中，保留
+        outboxRepository.deleteAllByIdInBatch(batch.stream().map(VoteOutbox::getId).toList());
+        replayed.add(batch.size());
+        folderKeys.keySet().forEach(broadcaster::markChanged);
+        for (VoteOutbox entry : batch) {
+            recordTrending(entry, folderKeys.get(entry.getSongId()));
+        }
+    }
+
+    // 热门排行是近似统计，失败不影响条目删除
+    private void recordTrending(VoteOutbox entry, String folderKey) {
+        try {
+            trendingService.recordVote(folderKey, entry.getSongId(), entry.getPreviousVote(), entry.getVote());
+        } catch (RuntimeException error) {
+            log.warn("【投票发件箱】热门排行更新失败: songId={}", entry.getSongId(), error);
+        }
+    }
+}
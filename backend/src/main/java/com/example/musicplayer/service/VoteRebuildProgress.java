@@ -0,0 +1,71 @@
+package com.example.musicplayer.service;
+
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Redis 投票读模型全量重建的进度指标，供管理接口查看
+ */
+@Component
+public class VoteRebuildProgress {
+
+    private volatile boolean running;
+    private volatile String phase = "idle";
+    private volatile long startedAt;
+    private volatile long finishedAt;
+    private volatile long lastDurationMillis;
+    private final AtomicLong votesWritten = new AtomicLong();
+    private final AtomicLong batches = new AtomicLong();
+    private final AtomicLong completedRuns = new AtomicLong();
+
+    public void start() {
+        running = true;
+        phase = "votes";
+        startedAt = System.currentTimeMillis();
+        votesWritten.set(0);
+        batches.set(0);
+    }
+
+    public void phase(String phase) {
+        this.phase = phase;
+    }
+
+    public long batchWritten(int votes) {
+        votesWritten.addAndGet(votes);
+        return batches.incrementAndGet();
+    }
+
+    public long votesWritten() {
+        return votesWritten.get();
+    }
+
+    public void finish(boolean success) {
+        running = false;
+        phase = success ? "idle" : "failed";
+        finishedAt = System.currentTimeMillis();
+        lastDurationMillis = finishedAt - startedAt;
+        if (success) {
+            completedRuns.incrementAndGet();
+        }
+    }
+
+    public boolean isRunning() {
+        return running;
+    }
+
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("running", running);
+        stats.put("phase", phase);
+        stats.put("votesWritten", votesWritten.get());
+        stats.put("batches", batches.get());
+        stats.put("startedAt", startedAt);
+        stats.put("finishedAt", finishedAt);
+        stats.put("lastDurationMillis", lastDurationMillis);
+        stats.put("completedRuns", completedRuns.get());
+        return stats;
+    }
+}
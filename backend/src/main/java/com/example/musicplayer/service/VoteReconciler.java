@@ -0,0 +1,207 @@
+package com.example.musicplayer.service;
+
+import com.example.musicplayer.repository.SongRepository;
+import com.example.musicplayer.repository.SongVoteRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.stereotype.Service;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 投票读模型增量对账。
+ * <p>
+ * 每首歌比对 MySQL 的 COUNT / SUM(CRC32(user_id))（按点赞、点踩分开）与 Redis 的 SCARD（位图存储为 BITCOUNT）和摘要 Hash
+ * {@link VoteRedisProjector#digestKey}，只有摘要不一致的歌曲才按 MySQL 重写，同时修正相关用户的投票索引字段；
+ * 重写时摘要已不同于比对时读到的值（期间有新投票投影）则放弃，留给后续轮次重新比对。
+ * 每轮先检查 updated_at 晚于上次水位的歌曲，再从轮转游标处抽查固定批数的歌曲，
+ * 单轮开销与变更量和批数成正比，不随投票表规模增长；多轮之后覆盖全部歌曲。
+ * <p>
+ * 取消投票会删除行、不留 updated_at，这类漂移由轮转抽查发现。调用方需持有投票任务锁，避免与全量重建并发。
+ */
+@Slf4j
+@Service
+public class VoteReconciler {
+
+    private static final String WATERMARK_KEY = "votes:reconcile:watermark";
+    private static final String CURSOR_KEY = "votes:reconcile:cursor";
+    private static final int CHECK_BATCH_SIZE = 500;
+    private static final int MAX_RECENT_SONGS = 5000;
+    // 水位回退的秒数，覆盖事务提交与 updated_at 取值之间的时钟差
+    private static final long WATERMARK_OVERLAP_SECONDS = 60;
+
+    private final SongVoteRepository songVoteRepository;
+    private final SongRepository songRepository;
+    private final StringRedisTemplate redisTemplate;
+    private final VoteRedisProjector redisProjector;
+    private final SongService songService;
+    private final FolderVersionService folderVersions;
+    private final int sweepBatches;
+
+    private final AtomicLong runs = new AtomicLong();
+    private final AtomicLong songsChecked = new AtomicLong();
+    private final AtomicLong songsRepaired = new AtomicLong();
+    private final AtomicLong songsSkipped = new AtomicLong();
+    private volatile Map<String, Object> lastRun = Map.of();
+
+    public VoteReconciler(SongVoteRepository songVoteRepository,
+                          SongRepository songRepository,
+                          StringRedisTemplate redisTemplate,
+                          VoteRedisProjector redisProjector,
+                          SongService songService,
+                          FolderVersionService folderVersions,
+                          @Value("${app.vote-reconcile.sweep-batches:4}") int sweepBatches) {
+        this.songVoteRepository = songVoteRepository;
+        this.songRepository = songRepository;
+        this.redisTemplate = redisTemplate;
+        this.redisProjector = redisProjector;
+        this.songService = songService;
+        this.folderVersions = folderVersions;
+        this.sweepBatches = sweepBatches;
+    }
+
+    /**
+     * 执行一轮对账，调用方需持有投票任务锁
+     */
+    public Map<String, Object> reconcile() {
+        long startedAt = System.currentTimeMillis();
+        int[] recent = checkRecentSongs(startedAt);
+        int[] sweep = sweep();
+
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("recentChecked", recent[0]);
+        result.put("recentRepaired", recent[1]);
+        result.put("sweepChecked", sweep[0]);
+        result.put("sweepRepaired", sweep[1]);
+        result.put("skipped", recent[2] + sweep[2]);
+        result.put("durationMillis", System.currentTimeMillis() - startedAt);
+        result.put("finishedAt", System.currentTimeMillis());
+        lastRun = result;
+        runs.incrementAndGet();
+        if (recent[1] + sweep[1] > 0) {
+            log.warn("【投票对账】发现并修复 {} 首歌曲的票数漂移", recent[1] + sweep[1]);
+        }
+        return result;
+    }
+
+    public Map<String, Object> stats() {
+        return Map.of(
+                "runs", runs.get(),
+                "songsChecked", songsChecked.get(),
+                "songsRepaired", songsRepaired.get(),
+                "songsSkipped", songsSkipped.get(),
+                "lastRun", lastRun);
+    }
+
+    private int[] checkRecentSongs(long startedAt) {
+        String watermark = redisTemplate.opsForValue().get(WATERMARK_KEY);
+        int[] result = new int[3];
+        if (watermark != null) {
+            LocalDateTime since = LocalDateTime.ofInstant(Instant.ofEpochMilli(Long.parseLong(watermark)), ZoneId.systemDefault())
+                    .minusSeconds(WATERMARK_OVERLAP_SECONDS);
+            // 超出上限的部分留给轮转抽查
+            List<Long> songIds = songVoteRepository.findSongIdsUpdatedSince(since, PageRequest.of(0, MAX_RECENT_SONGS));
+            for (int from = 0; from < songIds.size(); from += CHECK_BATCH_SIZE) {
+                int[] checked = check(songIds.subList(from, Math.min(songIds.size(), from + CHECK_BATCH_SIZE)));
+                result[1] += checked[0];
+                result[2] += checked[1];
+            }
+            result[0] = songIds.size();
+        }
+        redisTemplate.opsForValue().set(WATERMARK_KEY, Long.toString(startedAt));
+        return result;
+    }
+
+    private int[] sweep() {
+        String cursorValue = redisTemplate.opsForValue().get(CURSOR_KEY);
+        long cursor = cursorValue == null ? 0 : Long.parseLong(cursorValue);
+        int[] result = new int[3];
+        for (int batch = 0; batch < sweepBatches; batch++) {
+            List<Long> songIds = songRepository.findIdsAfter(cursor, PageRequest.of(0, CHECK_BATCH_SIZE));
+            if (songIds.isEmpty()) {
+                // 一圈结束，下一轮从头开始
+                cursor = 0;
+                break;
+            }
+            result[0] += songIds.size();
+            int[] checked = check(songIds);
+            result[1] += checked[0];
+            result[2] += checked[1];
+            cursor = songIds.getLast();
+        }
+        redisTemplate.opsForValue().set(CURSOR_KEY, Long.toString(cursor));
+        return result;
+    }
+
+    /**
+     * @return [修复的歌曲数, 比对后票数又有变化而放弃修复的歌曲数]
+     */
+    private int[] check(List<Long> songIds) {
+        // songId -> [likes, dislikes, likeSum, dislikeSum]
+        Map<Long, long[]> expected = new HashMap<>();
+        for (Object[] row : songVoteRepository.aggregateDigests(songIds)) {
+            long[] digest = expected.computeIfAbsent(((Number) row[0]).longValue(), _ -> new long[4]);
+            int column = ((Number) row[1]).intValue() > 0 ? 0 : 1;
+            digest[column] = ((Number) row[2]).longValue();
+            digest[column + 2] = ((Number) row[3]).longValue();
+        }
+        List<Object> actual = redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            RedisSerializer<String> serializer = redisTemplate.getStringSerializer();
+            for (Long songId : songIds) {
+                redisProjector.appendCounts(connection, songId);
+                connection.hashCommands().hMGet(serializer.serialize(VoteRedisProjector.digestKey(songId)),
+                        serializer.serialize("l"), serializer.serialize("d"));
+            }
+            return null;
+        });
+
+        Set<String> changedFolders = new HashSet<>();
+        int repaired = 0;
+        int skipped = 0;
+        // 每首歌：计数命令之后跟一条摘要 HMGET
+        int width = redisProjector.countCommands() + 1;
+        for (int i = 0; i < songIds.size(); i++) {
+            Long songId = songIds.get(i);
+            long[] digest = expected.getOrDefault(songId, new long[4]);
+            long[] counts = redisProjector.parseCounts(actual, i * width);
+            List<?> sums = (List<?>) actual.get(i * width + width - 1);
+            if (counts[0] == digest[0] && counts[1] == digest[1]
+                    && toLong(sums.get(0)) == digest[2] && toLong(sums.get(1)) == digest[3]) {
+                continue;
+            }
+            String folderKey = songService.findFolderKey(songId);
+            // 比对之后被投票改动的歌曲放弃修复：水位之后的变更由下一轮按 updated_at 重新比对，取消投票由轮转抽查发现
+            if (!redisProjector.repairSong(folderKey == null ? null : VoteRedisProjector.folderVotesKey(folderKey),
+                    songId, songVoteRepository.findVoteTuplesBySongId(songId), sums)) {
+                skipped++;
+                continue;
+            }
+            if (folderKey != null) {
+                changedFolders.add(folderKey);
+            }
+            repaired++;
+        }
+        changedFolders.forEach(folderVersions::bumpFolder);
+        songsChecked.addAndGet(songIds.size());
+        songsRepaired.addAndGet(repaired);
+        songsSkipped.addAndGet(skipped);
+        return new int[]{repaired, skipped};
+    }
+
+    private static long toLong(Object value) {
+        return value == null ? 0 : Long.parseLong(value.toString());
+    }
+}
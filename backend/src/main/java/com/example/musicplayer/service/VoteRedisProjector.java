@@ -1,34 +1,590 @@
 package com.example.musicplayer.service;
 
-import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.connection.RedisConnection;
+import org.springframework.data.redis.connection.ReturnType;
+import org.springframework.data.redis.core.RedisCallback;
 import org.springframework.data.redis.core.StringRedisTemplate;
 import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.serializer.RedisSerializer;
 import org.springframework.stereotype.Service;
 
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.zip.CRC32;
+
 @Service
-@RequiredArgsConstructor
 public class VoteRedisProjector {
-    private static final DefaultRedisScript<Long> PROJECT_SCRIPT = new DefaultRedisScript<>(
-            "if ARGV[1] == '1' then " +
-                    "redis.call('sadd', KEYS[1], ARGV[2]); " +
-                    "redis.call('srem', KEYS[2], ARGV[2]); " +
-                    "elseif ARGV[1] == '-1' then " +
-                    "redis.call('srem', KEYS[1], ARGV[2]); " +
-                    "redis.call('sadd', KEYS[2], ARGV[2]); " +
-                    "else " +
-                    "redis.call('srem', KEYS[1], ARGV[2]); " +
-                    "redis.call('srem', KEYS[2], ARGV[2]); " +
-                    "end; return 1",
-            Long.class);
+    /**
+     * 歌单级票数快照 Hash 中的就绪标记字段；存在即表示该 Hash 已完整重建，缺失的歌曲票数为 0
+     */
+    public static final String FOLDER_VOTES_READY_FIELD = "_ready";
+
+    /**
+     * 全量重建进行中时存放本次重建的 runId；投影脚本据此把变更同时写入影子键空间 {@link #shadowPrefix}
+     */
+    public static final String REBUILD_RUN_KEY = "votes:rebuild:run";
+
+    /**
+     * 用户投票索引 {@link #userVotesKey} 完整可用的标记，由全量重建切换时写入；
+     * 存在时缺失的用户 Hash / 字段即表示没有投票，不存在时（如 Redis 数据丢失）读请求回退到 MySQL
+     */
+    public static final String USER_VOTES_READY_KEY = "votes:user-index:ready";
+
+    // 投影脚本。KEYS：1/2 点赞、点踩 Set，3/4 点赞、点踩位图，5 歌单版本号，6 歌单快照，7 重建标记，8 摘要，9 用户投票索引，
+    // 10 已投影的发件箱 id；ARGV：1 投票（1 / -1 / 0），2 userId，3 folderKey（可为空），4 songId，5 userHash，
+    // 6 发件箱 id，7 发件箱 id 保留秒数，8 写入位图的最大 userId（Set 存储为 -1，更大的用户存于 Set）。
+    // 更早的发件箱条目直接返回已生效的 id；成员真正增减时同步调整摘要中的哈希和。
+    // 重建期间对影子键重复一次并标记该歌曲和用户为脏，同时维护影子歌单快照；
+    // 已切换的歌曲（用户）线上键即为新数据，不再写影子键，影子歌单快照改由线上计数生成
+    private static final DefaultRedisScript<Long> PROJECT_SCRIPT = new DefaultRedisScript<>("""
+            local limit = tonumber(ARGV[8])
+            local bits = tonumber(ARGV[2]) <= limit
+            local function count(set, bitmap)
+              local n = redis.call('scard', set)
+              if limit >= 0 then n = n + redis.call('bitcount', bitmap) end
+              return n
+            end
+            local function counts(p)
+              return count(p .. KEYS[1], p .. KEYS[3]) .. ':' .. count(p .. KEYS[2], p .. KEYS[4])
+            end
+            local function add(set, bitmap)
+              if bits then return 1 - redis.call('setbit', bitmap, ARGV[2], 1) end
+              return redis.call('sadd', set, ARGV[2])
+            end
+            -- 清零前先确认位图存在，避免 SETBIT 0 为从未投过票的歌曲分配位图
+            local function remove(set, bitmap)
+              if not bits then return redis.call('srem', set, ARGV[2]) end
+              if redis.call('exists', bitmap) == 0 then return 0 end
+              return redis.call('setbit', bitmap, ARGV[2], 0)
+            end
+            local function apply(p)
+              local dl, dd
+              if ARGV[1] == '1' then
+                dl = add(p .. KEYS[1], p .. KEYS[3])
+                dd = -remove(p .. KEYS[2], p .. KEYS[4])
+              elseif ARGV[1] == '-1' then
+                dl = -remove(p .. KEYS[1], p .. KEYS[3])
+                dd = add(p .. KEYS[2], p .. KEYS[4])
+              else
+                dl = -remove(p .. KEYS[1], p .. KEYS[3])
+                dd = -remove(p .. KEYS[2], p .. KEYS[4])
+              end
+              if dl ~= 0 then redis.call('hincrby', p .. KEYS[8], 'l', dl * tonumber(ARGV[5])) end
+              if dd ~= 0 then redis.call('hincrby', p .. KEYS[8], 'd', dd * tonumber(ARGV[5])) end
+            end
+            local function index(p)
+              if ARGV[1] == '0' then
+                redis.call('hdel', p .. KEYS[9], ARGV[4])
+              else
+                redis.call('hset', p .. KEYS[9], ARGV[4], ARGV[1])
+              end
+            end
+
+            local applied = tonumber(redis.call('get', KEYS[10]) or '0')
+            if tonumber(ARGV[6]) < applied then return applied end
+            redis.call('set', KEYS[10], ARGV[6], 'EX', ARGV[7])
+            apply('')
+            index('')
+            if ARGV[3] ~= '' then
+              redis.call('hincrby', KEYS[5], ARGV[3], 1)
+              redis.call('hset', KEYS[6], ARGV[4], counts(''))
+            end
+            local run = redis.call('get', KEYS[7])
+            if run then
+              local shadow = 'votes:shadow:' .. run .. ':'
+              if redis.call('sismember', shadow .. 'swapped', ARGV[4]) == 0 then
+                apply(shadow)
+                redis.call('sadd', shadow .. 'dirty', ARGV[4])
+                redis.call('sadd', shadow .. 'songs', ARGV[4])
+                if ARGV[3] ~= '' then redis.call('hset', shadow .. 'folder:' .. ARGV[3], ARGV[4], counts(shadow)) end
+              elseif ARGV[3] ~= '' then
+                redis.call('hset', shadow .. 'folder:' .. ARGV[3], ARGV[4], counts(''))
+              end
+              if redis.call('sismember', shadow .. 'swapped-users', ARGV[2]) == 0 then
+                index(shadow)
+                redis.call('sadd', shadow .. 'dirty-users', ARGV[2])
+                redis.call('sadd', shadow .. 'users', ARGV[2])
+              end
+            end
+            return tonumber(ARGV[6])
+            """, Long.class);
+
+    // 对账修复脚本。KEYS：1/2 点赞、点踩 Set，3/4 点赞、点踩位图，5 摘要，6 歌单快照（ARGV[6] 为空时省略），其后为各用户的投票索引键；
+    // ARGV：1/2 比对时读到的摘要 l / d（缺失为空串），3/4 新摘要，5 songId，6 快照字段值，7 写入位图的最大 userId，
+    // 之后每个用户依次为 (userId, 1 / -1 / 0)，与索引键一一对应。摘要已变化说明比对后又有投票投影，返回 0 不做修改
+    private static final DefaultRedisScript<Long> REPAIR_SCRIPT = new DefaultRedisScript<>("""
+            local current = redis.call('hmget', KEYS[5], 'l', 'd')
+            if (current[1] or '') ~= ARGV[1] or (current[2] or '') ~= ARGV[2] then return 0 end
+            redis.call('del', KEYS[1], KEYS[2], KEYS[3], KEYS[4], KEYS[5])
+            local limit = tonumber(ARGV[7])
+            local first = ARGV[6] == '' and 6 or 7
+            for i = first, #KEYS do
+              local userId, code = ARGV[8 + (i - first) * 2], ARGV[9 + (i - first) * 2]
+              if code == '0' then
+                redis.call('hdel', KEYS[i], ARGV[5])
+              else
+                local like = code == '1'
+                if tonumber(userId) <= limit then
+                  redis.call('setbit', like and KEYS[3] or KEYS[4], userId, 1)
+                else
+                  redis.call('sadd', like and KEYS[1] or KEYS[2], userId)
+                end
+                redis.call('hset', KEYS[i], ARGV[5], code)
+              end
+            end
+            redis.call('hset', KEYS[5], 'l', ARGV[3], 'd', ARGV[4])
+            if ARGV[6] ~= '' then redis.call('hset', KEYS[6], ARGV[5], ARGV[6]) end
+            return 1
+            """, Long.class);
+
+    /**
+     * 已投影发件箱 id 的保留时长：只需覆盖仍持有旧条目的即时投影和批量重放，比条目在表中的停留时间长即可
+     */
+    private static final long APPLIED_TTL_SECONDS = 3600;
+
+    // 位图偏移量上限（Redis 单个字符串最大 512MB）
+    private static final long MAX_BITMAP_OFFSET = (1L << 32) - 1;
 
     private final StringRedisTemplate redisTemplate;
+    private final boolean bitmap;
+    // 写入位图的最大 userId：位图长度由最大 userId 决定，更大的用户改存 Set，避免单个投票分配整段位图；Set 存储时为 -1
+    private final long bitmapLimit;
+
+    public VoteRedisProjector(StringRedisTemplate redisTemplate,
+                              @Value("${app.votes.redis-storage:set}") String storage,
+                              @Value("${app.votes.bitmap-max-user-id:1048575}") long bitmapMaxUserId) {
+        if (!"set".equals(storage) && !"bitmap".equals(storage)) {
+            throw new IllegalStateException("app.votes.redis-storage must be set or bitmap: " + storage);
+        }
+        if (bitmapMaxUserId < 0 || bitmapMaxUserId > MAX_BITMAP_OFFSET) {
+            throw new IllegalStateException("app.votes.bitmap-max-user-id must be between 0 and " + MAX_BITMAP_OFFSET);
+        }
+        this.redisTemplate = redisTemplate;
+        this.bitmap = "bitmap".equals(storage);
+        this.bitmapLimit = bitmap ? bitmapMaxUserId : -1;
+    }
+
+    /**
+     * @param folderKey 歌曲所属歌单，非空时在同一脚本内推进该歌单的版本号（见 {@link FolderVersionService}），
+     *                  并刷新歌单级票数快照 {@link #folderVotesKey}
+     * @param outboxId  对应的发件箱条目 id；该用户对该歌曲已投影过更新的条目时不做修改
+     * @return 投影后该用户对该歌曲已生效的发件箱 id，不小于 outboxId
+     */
+    public long project(Long songId, Long userId, Integer voteCode, String folderKey, Long outboxId) {
+        Projection projection = projection(songId, userId, voteCode, folderKey, outboxId);
+        Long applied = redisTemplate.execute(PROJECT_SCRIPT, projection.keys(), (Object[]) projection.args());
+        return applied == null ? outboxId : applied;
+    }
+
+    public Projection projection(Long songId, Long userId, Integer voteCode, String folderKey, Long outboxId) {
+        return new Projection(songId, userId, voteCode, folderKey, outboxId, bitmapLimit);
+    }
+
+    /**
+     * 每首歌的计数命令数，见 {@link #appendCounts}
+     */
+    public int countCommands() {
+        return bitmap ? 4 : 2;
+    }
+
+    /**
+     * 在 Pipeline 中追加一首歌的计数命令：点赞、点踩 Set 的 SCARD；位图存储时再加两个位图的 BITCOUNT
+     * （超出位图上限的用户存于 Set），结果用 {@link #parseCounts} 解析
+     */
+    public void appendCounts(RedisConnection connection, Long songId) {
+        RedisSerializer<String> serializer = redisTemplate.getStringSerializer();
+        connection.setCommands().sCard(serializer.serialize(likesSetKey(songId)));
+        connection.setCommands().sCard(serializer.serialize(dislikesSetKey(songId)));
+        if (bitmap) {
+            connection.stringCommands().bitCount(serializer.serialize(likesBitmapKey(songId)));
+            connection.stringCommands().bitCount(serializer.serialize(dislikesBitmapKey(songId)));
+        }
+    }
+
+    /**
+     * @param offset 该歌曲第一条计数命令在 Pipeline 结果中的位置
+     * @return [likes, dislikes]
+     */
+    public long[] parseCounts(List<?> results, int offset) {
+        long likes = toLong(results.get(offset));
+        long dislikes = toLong(results.get(offset + 1));
+        if (bitmap) {
+            likes += toLong(results.get(offset + 2));
+            dislikes += toLong(results.get(offset + 3));
+        }
+        return new long[]{likes, dislikes};
+    }
+
+    /**
+     * 在 Pipeline 中追加一条写入：userId 不超过位图上限时 SETBIT，否则 SADD，用于重建
+     *
+     * @param prefix 线上键传 ""，重建时传影子前缀
+     */
+    public void addVoter(RedisConnection connection, String prefix, Long songId, boolean like, long userId) {
+        RedisSerializer<String> serializer = redisTemplate.getStringSerializer();
+        if (userId <= bitmapLimit) {
+            String key = prefix + (like ? likesBitmapKey(songId) : dislikesBitmapKey(songId));
+            connection.stringCommands().setBit(serializer.serialize(key), userId, true);
+        } else {
+            String key = prefix + (like ? likesSetKey(songId) : dislikesSetKey(songId));
+            connection.setCommands().sAdd(serializer.serialize(key), serializer.serialize(Long.toString(userId)));
+        }
+    }
+
+    private static String likesSetKey(Long songId) {
+        return "likes:" + songId;
+    }
+
+    private static String dislikesSetKey(Long songId) {
+        return "dislikes:" + songId;
+    }
+
+    private static String likesBitmapKey(Long songId) {
+        return "vbits:likes:" + songId;
+    }
+
+    private static String dislikesBitmapKey(Long songId) {
+        return "vbits:dislikes:" + songId;
+    }
+
+    /**
+     * @return [likes, dislikes]
+     */
+    public long[] counts(Long songId) {
+        return read(List.of(songId), null).counts().get(songId);
+    }
+
+    /**
+     * 一个 Pipeline 取回多首歌的票数，以及（userId 非空时）该用户对这些歌的投票
+     */
+    public VoteRead read(Collection<Long> songIds, Long userId) {
+        List<Long> ids = List.copyOf(songIds);
+        List<Object> results = redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            RedisSerializer<String> serializer = redisTemplate.getStringSerializer();
+            for (Long songId : ids) {
+                appendCounts(connection, songId);
+            }
+            if (userId != null && !ids.isEmpty()) {
+                connection.keyCommands().exists(serializer.serialize(USER_VOTES_READY_KEY));
+                connection.hashCommands().hMGet(serializer.serialize(userVotesKey(userId)),
+                        ids.stream().map(id -> serializer.serialize(id.toString())).toArray(byte[][]::new));
+            }
+            return null;
+        });
+        int width = countCommands();
+        Map<Long, long[]> counts = new LinkedHashMap<>();
+        for (int i = 0; i < ids.size(); i++) {
+            counts.put(ids.get(i), parseCounts(results, i * width));
+        }
+        Map<Long, Integer> userVotes = null;
+        if (userId != null && !ids.isEmpty() && Boolean.TRUE.equals(results.get(ids.size() * width))) {
+            List<?> codes = (List<?>) results.get(ids.size() * width + 1);
+            userVotes = new HashMap<>();
+            for (int i = 0; i < ids.size(); i++) {
+                Object code = codes.get(i);
+                userVotes.put(ids.get(i), code == null ? 0 : Integer.parseInt(code.toString()));
+            }
+        }
+        return new VoteRead(counts, userVotes);
+    }
+
+    /**
+     * 一次 Pipeline 投影多条变更（EVALSHA），供发件箱批量重放；调用方需保证同一用户对同一首歌只出现一次，
+     * 条目由 {@link #projection} 构造
+     *
+     * @return 与传入顺序对应的已生效发件箱 id，见 {@link #project}
+     */
+    public List<Long> projectBatch(List<Projection> projections) {
+        if (projections.isEmpty()) {
+            return List.of();
+        }
+        RedisSerializer<String> serializer = redisTemplate.getStringSerializer();
+        byte[] script = serializer.serialize(PROJECT_SCRIPT.getScriptAsString());
+        // 先确保脚本已缓存，Pipeline 中 EVALSHA 无法在 NOSCRIPT 时回退
+        redisTemplate.execute((RedisCallback<String>) connection -> connection.scriptingCommands().scriptLoad(script));
+        List<Object> results = redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            for (Projection projection : projections) {
+                List<String> keys = projection.keys();
+                String[] args = projection.args();
+                byte[][] keysAndArgs = new byte[keys.size() + args.length][];
+                for (int i = 0; i < keys.size(); i++) {
+                    keysAndArgs[i] = serializer.serialize(keys.get(i));
+                }
+                for (int i = 0; i < args.length; i++) {
+                    keysAndArgs[keys.size() + i] = serializer.serialize(args[i]);
+                }
+                connection.scriptingCommands().evalSha(PROJECT_SCRIPT.getSha1(), ReturnType.INTEGER, keys.size(), keysAndArgs);
+            }
+            return null;
+        });
+        return results.stream().map(VoteRedisProjector::toLong).toList();
+    }
+
+    /**
+     * 歌单级票数快照：songId -> "likes:dislikes"，一次 HGETALL 即可修正整个歌单的票数
+     */
+    public static String folderVotesKey(String folderKey) {
+        return "votes:folder:" + folderKey;
+    }
+
+    /**
+     * 用户投票索引：songId -> 1 / -1，取消投票时删除字段；投票读写热路径据此避免访问 MySQL
+     */
+    public static String userVotesKey(Long userId) {
+        return "votes:user:" + userId;
+    }
+
+    /**
+     * 按 MySQL 中该用户的全部投票重写用户投票索引（MULTI 内先删后写）
+     *
+     * @param songVotes [songId, vote]
+     */
+    public void rewriteUser(String prefix, Long userId, List<Object[]> songVotes) {
+        redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            RedisSerializer<String> serializer = redisTemplate.getStringSerializer();
+            byte[] key = serializer.serialize(prefix + userVotesKey(userId));
+            connection.multi();
+            connection.keyCommands().del(key);
+            if (!songVotes.isEmpty()) {
+                Map<byte[], byte[]> fields = new HashMap<>();
+                for (Object[] row : songVotes) {
+                    fields.put(serializer.serialize(row[0].toString()), serializer.serialize(row[1].toString()));
+                }
+                connection.hashCommands().hMSet(key, fields);
+            }
+            connection.exec();
+            return null;
+        });
+    }
+
+    /**
+     * 投票摘要 Hash：l / d 字段分别为点赞、点踩用户 {@link #userHash} 之和，与成员顺序无关，
+     * 配合 SCARD / BITCOUNT 可以和 MySQL 的 COUNT / SUM(CRC32(user_id)) 逐首比对
+     */
+    public static String digestKey(Long songId) {
+        return "votes:digest:" + songId;
+    }
+
+    /**
+     * 与 MySQL CRC32(user_id) 一致：对十进制字符串做 CRC32
+     */
+    public static long userHash(long userId) {
+        CRC32 crc = new CRC32();
+        crc.update(Long.toString(userId).getBytes(StandardCharsets.US_ASCII));
+        return crc.getValue();
+    }
+
+    /**
+     * 按 MySQL 中该歌曲的全部投票重写点赞/点踩成员与摘要（MULTI 事务内先删后写，读请求不会看到中间状态），
+     * 并刷新歌单快照字段
+     *
+     * @param prefix         线上键传 ""，重建时传影子前缀
+     * @param folderVotesKey 歌单快照 Hash 键，null 表示不写快照
+     * @param userVotes      [userId, vote]
+     */
+    public void rewriteSong(String prefix, String folderVotesKey, Long songId, List<Object[]> userVotes) {
+        redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            RedisSerializer<String> serializer = redisTemplate.getStringSerializer();
+            byte[] digestKey = serializer.serialize(prefix + digestKey(songId));
+            long likes = 0;
+            long dislikes = 0;
+            long likeSum = 0;
+            long dislikeSum = 0;
+            connection.multi();
+            connection.keyCommands().del(
+                    serializer.serialize(prefix + likesSetKey(songId)),
+                    serializer.serialize(prefix + dislikesSetKey(songId)),
+                    serializer.serialize(prefix + likesBitmapKey(songId)),
+                    serializer.serialize(prefix + dislikesBitmapKey(songId)),
+                    digestKey);
+            for (Object[] row : userVotes) {
+                long userId = ((Number) row[0]).longValue();
+                boolean like = ((Number) row[1]).intValue() > 0;
+                addVoter(connection, prefix, songId, like, userId);
+                if (like) {
+                    likes++;
+                    likeSum += userHash(userId);
+                } else {
+                    dislikes++;
+                    dislikeSum += userHash(userId);
+                }
+            }
+            connection.hashCommands().hMSet(digestKey, Map.of(
+                    serializer.serialize("l"), serializer.serialize(Long.toString(likeSum)),
+                    serializer.serialize("d"), serializer.serialize(Long.toString(dislikeSum))));
+            if (folderVotesKey != null) {
+                connection.hashCommands().hSet(serializer.serialize(folderVotesKey),
+                        serializer.serialize(songId.toString()),
+                        serializer.serialize(packCounts(likes, dislikes)));
+            }
+            connection.exec();
+            return null;
+        });
+    }
+
+    /**
+     * 对账修复：按 MySQL 重写该歌曲的点赞/点踩成员、摘要和歌单快照字段，并同步修正新旧投票用户在投票索引中的该歌曲字段。
+     * 只有摘要仍等于比对时读到的值才写入（Lua 内比较后写），比对之后投影的投票不会被旧的 MySQL 快照覆盖；
+     * 旧成员在比较前读取，读取后若有投票投影摘要同样会变化，因此写入时用到的旧成员一定是最新的
+     *
+     * @param observedDigest 比对时读到的摘要 [l, d]，字段缺失为 null
+     * @param userVotes      [userId, vote]，需在比对之后读取
+     * @return 摘要已变化、放弃修复时返回 false
+     */
+    public boolean repairSong(String folderVotesKey, Long songId, List<Object[]> userVotes, List<?> observedDigest) {
+        Map<Long, String> codes = new LinkedHashMap<>();
+        voters(songId).forEach(userId -> codes.put(userId, "0"));
+        long likes = 0;
+        long dislikes = 0;
+        long likeSum = 0;
+        long dislikeSum = 0;
+        for (Object[] row : userVotes) {
+            long userId = ((Number) row[0]).longValue();
+            boolean like = ((Number) row[1]).intValue() > 0;
+            codes.put(userId, like ? "1" : "-1");
+            if (like) {
+                likes++;
+                likeSum += userHash(userId);
+            } else {
+                dislikes++;
+                dislikeSum += userHash(userId);
+            }
+        }
+        List<String> keys = new ArrayList<>(6 + codes.size());
+        keys.add(likesSetKey(songId));
+        keys.add(dislikesSetKey(songId));
+        keys.add(likesBitmapKey(songId));
+        keys.add(dislikesBitmapKey(songId));
+        keys.add(digestKey(songId));
+        if (folderVotesKey != null) {
+            keys.add(folderVotesKey);
+        }
+        List<String> args = new ArrayList<>(7 + codes.size() * 2);
+        args.add(observedDigest.get(0) == null ? "" : observedDigest.get(0).toString());
+        args.add(observedDigest.get(1) == null ? "" : observedDigest.get(1).toString());
+        args.add(Long.toString(likeSum));
+        args.add(Long.toString(dislikeSum));
+        args.add(songId.toString());
+        args.add(folderVotesKey == null ? "" : packCounts(likes, dislikes));
+        args.add(Long.toString(bitmapLimit));
+        codes.forEach((userId, code) -> {
+            keys.add(userVotesKey(userId));
+            args.add(userId.toString());
+            args.add(code);
+        });
+        return Long.valueOf(1).equals(redisTemplate.execute(REPAIR_SCRIPT, keys, args.toArray()));
+    }
+
+    /**
+     * Redis 中该歌曲当前的点赞、点踩用户（位图存储时包括位图和超出上限存于 Set 的用户）
+     */
+    private Set<Long> voters(Long songId) {
+        Set<Long> voters = new LinkedHashSet<>();
+        for (String key : List.of(likesSetKey(songId), dislikesSetKey(songId))) {
+            Set<String> members = redisTemplate.opsForSet().members(key);
+            if (members != null) {
+                members.forEach(member -> voters.add(Long.parseLong(member)));
+            }
+        }
+        if (bitmap) {
+            for (String key : List.of(likesBitmapKey(songId), dislikesBitmapKey(songId))) {
+                byte[] bits = redisTemplate.execute((RedisCallback<byte[]>) connection ->
+                        connection.stringCommands().get(redisTemplate.getStringSerializer().serialize(key)));
+                // 位图按大端位序存储：第 i 字节的最高位对应 userId = i * 8
+                for (int i = 0; bits != null && i < bits.length; i++) {
+                    for (int bit = 0; bit < 8; bit++) {
+                        if ((bits[i] & (0x80 >>> bit)) != 0) {
+                            voters.add(i * 8L + bit);
+                        }
+                    }
+                }
+            }
+        }
+        return voters;
+    }
+
+    /**
+     * 影子键空间：votes:shadow:{runId}:likes:{songId}、...:dislikes:{songId}（位图存储另有 ...:vbits:likes:{songId} 等）、...:votes:digest:{songId}、...:folder:{folderKey}，
+     * 以及簿记用的 ...:songs（需要切换的歌曲）和 ...:dirty（重建期间被投票改动过的歌曲）
+     */
+    public static String shadowPrefix(String runId) {
+        return "votes:shadow:" + runId + ":";
+    }
+
+    public static String packCounts(long likes, long dislikes) {
+        return likes + ":" + dislikes;
+    }
+
+    public static VoteCounts unpackCounts(Object packed) {
+        if (packed == null) {
+            return VoteCounts.ZERO;
+        }
+        String value = packed.toString();
+        int separator = value.indexOf(':');
+        if (separator < 0) {
+            return VoteCounts.ZERO;
+        }
+        return new VoteCounts(Integer.parseInt(value.substring(0, separator)),
+                Integer.parseInt(value.substring(separator + 1)));
+    }
+
+    /**
+     * 用户对歌曲最后一次投影的发件箱 id，短期保留，用于丢弃乱序到达的旧条目
+     */
+    public static String appliedOutboxKey(Long userId, Long songId) {
+        return "votes:applied:" + userId + ":" + songId;
+    }
+
+    /**
+     * @param voteCode  变更后的投票，null 表示取消
+     * @param folderKey 可为 null
+     */
+    public record Projection(Long songId, Long userId, Integer voteCode, String folderKey, Long outboxId,
+                             long bitmapLimit) {
+
+        List<String> keys() {
+            return List.of(likesSetKey(songId), dislikesSetKey(songId), likesBitmapKey(songId), dislikesBitmapKey(songId),
+                    FolderVersionService.VERSIONS_KEY, folderVotesKey(folderKey == null ? "" : folderKey),
+                    REBUILD_RUN_KEY, digestKey(songId), userVotesKey(userId), appliedOutboxKey(userId, songId));
+        }
+
+        String[] args() {
+            return new String[]{
+                    voteCode == null ? "0" : voteCode.toString(),
+                    userId.toString(),
+                    folderKey == null ? "" : folderKey,
+                    songId.toString(),
+                    Long.toString(userHash(userId)),
+                    outboxId.toString(),
+                    Long.toString(APPLIED_TTL_SECONDS),
+                    Long.toString(bitmapLimit)};
+        }
+    }
+
+    private static long toLong(Object value) {
+        return value == null ? 0 : ((Number) value).longValue();
+    }
+
+    /**
+     * @param counts    songId -> [likes, dislikes]，按传入顺序
+     * @param userVotes songId -> 1 / -1 / 0；未传 userId 或用户投票索引未就绪时为 null
+     */
+    public record VoteRead(Map<Long, long[]> counts, Map<Long, Integer> userVotes) {
+
+        public Integer userVote(Long songId) {
+            return userVotes == null ? null : userVotes.get(songId);
+        }
+    }
 
-    public void project(Long songId, Long userId, Integer voteCode) {
-        String vote = voteCode == null ? "0" : voteCode.toString();
-        redisTemplate.execute(
-                PROJECT_SCRIPT,
-                java.util.List.of("likes:" + songId, "dislikes:" + songId),
-                vote,
-                userId.toString());
+    public record VoteCounts(int likes, int dislikes) {
+        public static final VoteCounts ZERO = new VoteCounts(0, 0);
     }
 }
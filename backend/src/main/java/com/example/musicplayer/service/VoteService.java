@@ -2,45 +2,48 @@ package com.example.musicplayer.service;
 
 import com.example.musicplayer.enums.VoteType;
 import com.example.musicplayer.model.SongVote;
-import com.example.musicplayer.repository.SongRepository;
+import com.example.musicplayer.model.VoteOutbox;
 import com.example.musicplayer.repository.SongVoteRepository;
-import lombok.extern.slf4j.Slf4j;
-import org.springframework.data.redis.core.StringRedisTemplate;
 import org.springframework.transaction.PlatformTransactionManager;
 import org.springframework.transaction.support.TransactionTemplate;
 import org.springframework.stereotype.Service;
 
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 @Service
-@Slf4j
 public class VoteService {
+    public static final int MAX_BATCH_SONGS = 200;
+
     private final SongVoteRepository songVoteRepository;
-    private final SongRepository songRepository;
-    private final StringRedisTemplate redisTemplate;
+    private final SongIdIndex songIdIndex;
     private final VoteRedisProjector redisProjector;
+    private final VoteOutboxRelay outboxRelay;
+    private final VoteReconciler voteReconciler;
+    private final VoteRebuildProgress rebuildProgress;
     private final TransactionTemplate transactionTemplate;
 
     public VoteService(SongVoteRepository songVoteRepository,
-                       SongRepository songRepository,
-                       StringRedisTemplate redisTemplate,
+                       SongIdIndex songIdIndex,
                        VoteRedisProjector redisProjector,
+                       VoteOutboxRelay outboxRelay,
+                       VoteReconciler voteReconciler,
+                       VoteRebuildProgress rebuildProgress,
                        PlatformTransactionManager transactionManager) {
         this.songVoteRepository = songVoteRepository;
-        this.songRepository = songRepository;
-        this.redisTemplate = redisTemplate;
+        this.songIdIndex = songIdIndex;
         this.redisProjector = redisProjector;
+        this.outboxRelay = outboxRelay;
+        this.voteReconciler = voteReconciler;
+        this.rebuildProgress = rebuildProgress;
         this.transactionTemplate = new TransactionTemplate(transactionManager);
     }
 
-    private String likesKey(Long songId) {
-        return "likes:" + songId;
-    }
-
-    private String dislikesKey(Long songId) {
-        return "dislikes:" + songId;
-    }
-
     public Map<String, Integer> like(Long songId, Long userId) {
         return vote(songId, userId, VoteType.LIKE);
     }
@@ -50,24 +53,36 @@ public class VoteService {
     }
 
     public Map<String, Integer> vote(Long songId, Long userId, VoteType newType) {
-        VoteChange change = transactionTemplate.execute(status -> saveVote(songId, userId, newType));
-        if (change != null) {
-            projectAfterCommit(change);
+        // 用户投票索引显示已是同一投票时不开启事务；索引未就绪时照常走 MySQL 判断
+        VoteRedisProjector.VoteRead current = redisProjector.read(List.of(songId), userId);
+        Integer currentVote = current.userVote(songId);
+        if (currentVote != null && currentVote == newType.getCode()) {
+            return countsOf(current, songId);
+        }
+        VoteOutbox entry = transactionTemplate.execute(status -> saveVote(songId, userId, newType));
+        if (entry != null) {
+            outboxRelay.projectNow(entry);
         }
         return counts(songId);
     }
 
     public Map<String, Integer> cancel(Long songId, Long userId) {
-        VoteChange change = transactionTemplate.execute(status -> cancelVote(songId, userId));
-        if (change != null) {
-            projectAfterCommit(change);
+        VoteRedisProjector.VoteRead current = redisProjector.read(List.of(songId), userId);
+        Integer currentVote = current.userVote(songId);
+        if (currentVote != null && currentVote == 0) {
+            return countsOf(current, songId);
+        }
+        VoteOutbox entry = transactionTemplate.execute(status -> cancelVote(songId, userId));
+        if (entry != null) {
+            outboxRelay.projectNow(entry);
         }
         return counts(songId);
     }
 
-    private VoteChange saveVote(Long songId, Long userId, VoteType newType) {
-        songRepository.findById(songId)
-                .orElseThrow(() -> new IllegalArgumentException("Song not found: " + songId));
+    private VoteOutbox saveVote(Long songId, Long userId, VoteType newType) {
+        if (!songIdIndex.exists(songId)) {
+            throw new IllegalArgumentException("Song not found: " + songId);
+        }
 
         SongVote existing = songVoteRepository.findByUserIdAndSongId(userId, songId).orElse(null);
         if (existing == null) {
@@ -78,49 +93,80 @@ public class VoteService {
         if (existing.getVoteType() == newType) {
             return null;
         }
+        Integer previousVote = existing.getVoteType() == null ? null : existing.getVoteType().getCode();
         existing.setVoteType(newType);
         songVoteRepository.save(existing);
-        return new VoteChange(songId, userId, newType.getCode());
+        return outboxRelay.append(songId, userId, newType.getCode(), previousVote);
     }
 
-    private VoteChange cancelVote(Long songId, Long userId) {
+    private VoteOutbox cancelVote(Long songId, Long userId) {
         SongVote existing = songVoteRepository.findByUserIdAndSongId(userId, songId).orElse(null);
         if (existing == null) {
             return null;
         }
         songVoteRepository.delete(existing);
-        return new VoteChange(songId, userId, null);
+        return outboxRelay.append(songId, userId, null, existing.getVoteType().getCode());
+    }
+
+    public Map<String, Integer> counts(Long songId) {
+        long[] counts = redisProjector.counts(songId);
+        return Map.of("likes", (int) counts[0], "dislikes", (int) counts[1]);
     }
 
-    private void projectAfterCommit(VoteChange change) {
-        try {
-            redisProjector.project(change.songId(), change.userId(), change.vote());
-        } catch (RuntimeException error) {
-            log.error("投票已写入 MySQL，但 Redis 更新失败；等待定期重建: songId={}, userId={}",
-                    change.songId(), change.userId(), error);
+    /**
+     * 票数与用户自己的投票都从 Redis 一次 Pipeline 读取；用户投票索引未就绪时回退到 MySQL
+     */
+    public Map<String, Integer> countsForUser(Long songId, Long userId) {
+        return countsBatch(List.of(songId), userId).get(songId);
+    }
+
+    /**
+     * 批量查询票数：一次 Redis Pipeline 取所有歌曲的计数及登录用户自己的投票（用户投票索引）；
+     * 索引未就绪时再用一条 IN 查询从 MySQL 取回用户投票
+     *
+     * @param userId 未登录时为 null，结果中不含 userVote
+     * @return songId -> {likes, dislikes[, userVote]}，按去重后的传入顺序
+     */
+    public Map<Long, Map<String, Integer>> countsBatch(Collection<Long> songIds, Long userId) {
+        Set<Long> ids = new LinkedHashSet<>(songIds);
+        if (ids.size() > MAX_BATCH_SONGS) {
+            throw new IllegalArgumentException("At most " + MAX_BATCH_SONGS + " songs per request");
+        }
+        Map<Long, Map<String, Integer>> result = new LinkedHashMap<>();
+        if (ids.isEmpty()) {
+            return result;
         }
+        VoteRedisProjector.VoteRead read = redisProjector.read(ids, userId);
+        Map<Long, Integer> userVotes = read.userVotes();
+        if (userId != null && userVotes == null) {
+            userVotes = new HashMap<>();
+            for (Object[] row : songVoteRepository.findUserVotes(userId, ids)) {
+                userVotes.put((Long) row[0], (Integer) row[1]);
+            }
+        }
+        Map<Long, Integer> votes = userVotes;
+        read.counts().forEach((songId, counts) -> result.put(songId, userId == null
+                ? Map.of("likes", (int) counts[0], "dislikes", (int) counts[1])
+                : Map.of("likes", (int) counts[0], "dislikes", (int) counts[1],
+                "userVote", votes.getOrDefault(songId, 0))));
+        return result;
     }
 
-    public Map<String, Integer> counts(Long songId) {
-        Long likeSize = redisTemplate.opsForSet().size(likesKey(songId));
-        Long dislikeSize = redisTemplate.opsForSet().size(dislikesKey(songId));
-        int likes = likeSize != null ? likeSize.intValue() : 0;
-        int dislikes = dislikeSize != null ? dislikeSize.intValue() : 0;
-        return Map.of("likes", likes, "dislikes", dislikes);
+    private static Map<String, Integer> countsOf(VoteRedisProjector.VoteRead read, Long songId) {
+        long[] counts = read.counts().get(songId);
+        return Map.of("likes", (int) counts[0], "dislikes", (int) counts[1]);
     }
 
-    public Map<String, Integer> countsForUser(Long songId, Long userId) {
-        Map<String, Integer> counts = counts(songId);
-        int userVote = songVoteRepository.findByUserIdAndSongId(userId, songId)
-                .map(SongVote::getVote)
-                .orElse(0);
-        return Map.of(
-                "likes", counts.get("likes"),
-                "dislikes", counts.get("dislikes"),
-                "userVote", userVote);
+    public Map<String, Object> rebuildStats() {
+        return rebuildProgress.stats();
+    }
+
+    public Map<String, Object> reconcileStats() {
+        return voteReconciler.stats();
     }
 
-    private record VoteChange(Long songId, Long userId, Integer vote) {
+    public Map<String, Object> outboxStats() {
+        return outboxRelay.stats();
     }
 
 }
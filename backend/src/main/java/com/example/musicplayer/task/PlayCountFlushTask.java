@@ -0,0 +1,48 @@
+package com.example.musicplayer.task;
+
+import com.example.musicplayer.service.PlayCountBuffer;
+import com.example.musicplayer.service.RedisTaskLock;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class PlayCountFlushTask {
+
+    private final PlayCountBuffer playCountBuffer;
+    private final RedisTaskLock taskLock;
+
+    private static final String LOCK_KEY = "music:task-lock:play-count-flush";
+
+    /**
+     * 定期把缓冲的播放次数写出；Redis 暂存模式下由一个实例负责把共享 Hash 落库
+     */
+    @Scheduled(fixedDelayString = "${app.play-count.flush-seconds:30}", timeUnit = TimeUnit.SECONDS)
+    public void flush() {
+        try {
+            playCountBuffer.flushLocal();
+        } catch (Exception e) {
+            log.error("【播放计数】写出本实例播放增量失败，下个周期重试", e);
+        }
+        if (!playCountBuffer.isRedisStage()) {
+            return;
+        }
+        String token = taskLock.tryAcquire(LOCK_KEY, Duration.ofMinutes(5));
+        if (token == null) {
+            return;
+        }
+        try {
+            playCountBuffer.flushRedisStage();
+        } catch (Exception e) {
+            log.error("【播放计数】Redis 暂存落库失败，下个周期重试", e);
+        } finally {
+            taskLock.release(LOCK_KEY, token);
+        }
+    }
+}
@@ -0,0 +1,44 @@
+package com.example.musicplayer.task;
+
+import com.example.musicplayer.service.RedisTaskLock;
+import com.example.musicplayer.service.SongService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class SongCacheWarmupTask {
+
+    private final SongService songService;
+    private final RedisTaskLock taskLock;
+
+    private static final String LOCK_KEY = "music:task-lock:song-cache-warmup";
+
+    /**
+     * 定期预热所有歌单缓存，缺失或即将过期的提前重建，避免 6 小时 TTL 到期时由用户请求承担查库开销
+     */
+    @Scheduled(fixedDelayString = "${app.song-cache.warmup-interval-minutes:10}",
+            initialDelay = 1, timeUnit = TimeUnit.MINUTES)
+    public void warmUp() {
+        String token = taskLock.tryAcquire(LOCK_KEY, Duration.ofMinutes(10));
+        if (token == null) {
+            return;
+        }
+        try {
+            int refreshed = songService.warmUpFolderCaches();
+            if (refreshed > 0) {
+                log.info("【歌单缓存预热】已重建 {} 个歌单缓存", refreshed);
+            }
+        } catch (Exception e) {
+            log.error("【歌单缓存预热】执行失败", e);
+        } finally {
+            taskLock.release(LOCK_KEY, token);
+        }
+    }
+}
@@ -35,6 +35,8 @@ public class SongSyncTask {
         log.info("【歌曲同步任务】开始执行 OSS → MySQL 歌曲元数据同步");
         try {
             songService.syncAllSongs();
+            // 同步结束会清空歌单缓存，立即预热，避免下一批请求集中查库
+            songService.warmUpFolderCaches();
             log.info("【歌曲同步任务】完成");
         } catch (Exception e) {
             log.error("【歌曲同步任务】执行失败", e);
@@ -0,0 +1,41 @@
+package com.example.musicplayer.task;
+
+import com.example.musicplayer.service.RedisTaskLock;
+import com.example.musicplayer.service.SongService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class TrendingCompactionTask {
+
+    private final SongService songService;
+    private final RedisTaskLock taskLock;
+
+    private static final String LOCK_KEY = "music:task-lock:trending-compaction";
+
+    /**
+     * 每小时把热门排行的衰减基准推到当前时刻，并清理已衰减殆尽的歌曲
+     */
+    @Scheduled(fixedDelay = 60, initialDelay = 5, timeUnit = TimeUnit.MINUTES)
+    public void compact() {
+        String token = taskLock.tryAcquire(LOCK_KEY, Duration.ofMinutes(10));
+        if (token == null) {
+            return;
+        }
+        try {
+            long folders = songService.compactTrending();
+            log.info("【热门排行】已压缩 {} 个歌单的排行分值", folders);
+        } catch (Exception e) {
+            log.error("【热门排行】压缩失败", e);
+        } finally {
+            taskLock.release(LOCK_KEY, token);
+        }
+    }
+}
@@ -0,0 +1,29 @@
+package com.example.musicplayer.task;
+
+import com.example.musicplayer.service.VoteCountBroadcaster;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.TimeUnit;
+
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class VoteCountPushTask {
+
+    private final VoteCountBroadcaster broadcaster;
+
+    /**
+     * 每个实例各自推送本实例投影的票数变化，不需要任务锁
+     */
+    @Scheduled(fixedDelayString = "${app.vote-push.interval-millis:1000}", timeUnit = TimeUnit.MILLISECONDS)
+    public void push() {
+        try {
+            broadcaster.flush();
+        } catch (Exception e) {
+            log.warn("【票数推送】发布失败，本周期的变化不再推送", e);
+        }
+    }
+}
@@ -1,20 +1,35 @@
 package com.example.musicplayer.task;
 
-import com.example.musicplayer.model.SongVote;
+import com.example.musicplayer.model.SongFolder;
+import com.example.musicplayer.repository.SongRepository;
 import com.example.musicplayer.repository.SongVoteRepository;
+import com.example.musicplayer.service.FolderVersionService;
 import com.example.musicplayer.service.RedisTaskLock;
+import com.example.musicplayer.service.SongFolderRegistry;
+import com.example.musicplayer.service.SongService;
+import com.example.musicplayer.service.VoteRebuildProgress;
+import com.example.musicplayer.service.VoteReconciler;
+import com.example.musicplayer.service.VoteRedisProjector;
 import jakarta.annotation.PostConstruct;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.ScanOptions;
 import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
 import org.springframework.data.redis.serializer.RedisSerializer;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Component;
 
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
 import java.time.Duration;
 
 @Slf4j
@@ -25,12 +40,56 @@ public class VoteCountSyncTask {
     private final SongVoteRepository songVoteRepository;
     private final StringRedisTemplate redisTemplate;
     private final RedisTaskLock taskLock;
+    private final FolderVersionService folderVersions;
+    private final SongRepository songRepository;
+    private final SongFolderRegistry folderRegistry;
+    private final VoteRebuildProgress progress;
+    private final SongService songService;
+    private final VoteRedisProjector redisProjector;
+    private final VoteReconciler voteReconciler;
 
     private static final String LOCK_KEY = "music:task-lock:vote-projection";
+    // 每批从 MySQL 读取、向 Redis 写入的投票条数，内存占用与该值成正比
+    private static final int BATCH_SIZE = 5000;
+    private static final int DELETE_BATCH_SIZE = 500;
+    private static final int PROGRESS_LOG_INTERVAL = 20;
+    private static final int MAX_SWAP_ATTEMPTS = 5;
+
+    // 每次切换脚本调用处理的歌曲/用户数，限制单次 Lua 执行阻塞 Redis 的时长
+    private static final int SWAP_CHUNK_SIZE = 100;
+    // 每首歌需要切换的键：两种存储的点赞/点踩键都在内，切换存储后另一种的遗留键随之删除
+    private static final List<String> SONG_KEY_KINDS =
+            List.of("likes:", "dislikes:", "vbits:likes:", "vbits:dislikes:", "votes:digest:");
+
+    // 分块切换：KEYS[1] 重建标记，KEYS[2] 脏集合，KEYS[3] 已切换集合，之后每个 id 依次占 ARGV[2] 对 (影子键, 线上键)；
+    // ARGV[1] runId，ARGV[2] 每个 id 的键对数，ARGV[3] 为 1 时忽略脏集合强制切换，ARGV[4..] 本块的 id。
+    // 影子键存在则 RENAME 覆盖线上键，不存在说明投票已不存在，删除线上键；切换后记入已切换集合，投影脚本不再写它的影子键。
+    // 仍在脏集合中的 id 跳过并返回，重读后再切换
+    private static final DefaultRedisScript<List> SWAP_CHUNK_SCRIPT = new DefaultRedisScript<>(
+            "if redis.call('get', KEYS[1]) ~= ARGV[1] then return redis.error_reply('vote rebuild run expired') end " +
+                    "local per = tonumber(ARGV[2]) " +
+                    "local skipped = {} " +
+                    "for i = 4, #ARGV do " +
+                    "if ARGV[3] ~= '1' and redis.call('sismember', KEYS[2], ARGV[i]) == 1 then " +
+                    "table.insert(skipped, ARGV[i]) " +
+                    "else " +
+                    "local base = 3 + (i - 4) * per * 2 " +
+                    "for j = 1, per do " +
+                    "local src, dst = KEYS[base + j * 2 - 1], KEYS[base + j * 2] " +
+                    "if redis.call('exists', src) == 1 then redis.call('rename', src, dst) " +
+                    "else redis.call('unlink', dst) end " +
+                    "end " +
+                    "redis.call('sadd', KEYS[3], ARGV[i]) " +
+                    "end " +
+                    "end " +
+                    "return skipped",
+            List.class);
+
     /**
-     * 定期从 MySQL 事实表重建 Redis 读模型。
+     * 定期从 MySQL 事实表全量重建 Redis 读模型。日常漂移由 {@link #reconcile} 增量修复，全量重建只作兜底。
      */
-    @Scheduled(fixedDelay = 60, timeUnit = TimeUnit.MINUTES) // 每60分钟执行一次
+    @Scheduled(fixedDelayString = "${app.vote-rebuild.interval-hours:24}",
+            initialDelayString = "${app.vote-rebuild.interval-hours:24}", timeUnit = TimeUnit.HOURS)
     public void rebuildRedisFromDatabase() {
         String token = taskLock.tryAcquire(LOCK_KEY, Duration.ofHours(2));
         if (token == null) {
@@ -45,6 +104,25 @@ public class VoteCountSyncTask {
         }
     }
 
+    /**
+     * 增量对账：只比对近期有变更的歌曲和一小批轮转抽查的歌曲，只重写摘要不一致的歌曲
+     */
+    @Scheduled(fixedDelayString = "${app.vote-reconcile.interval-minutes:10}",
+            initialDelayString = "${app.vote-reconcile.interval-minutes:10}", timeUnit = TimeUnit.MINUTES)
+    public void reconcile() {
+        String token = taskLock.tryAcquire(LOCK_KEY, Duration.ofMinutes(30));
+        if (token == null) {
+            return;
+        }
+        try {
+            voteReconciler.reconcile();
+        } catch (Exception e) {
+            log.error("【投票对账】对账失败，下个周期重试", e);
+        } finally {
+            taskLock.release(LOCK_KEY, token);
+        }
+    }
+
     /**
      * 项目启动时强制同步一次（防止 Redis 冷启动后票数为0）
      */
@@ -54,41 +132,340 @@ public class VoteCountSyncTask {
         rebuildRedisFromDatabase();
     }
 
+    /**
+     * 重建写入影子键空间，线上读取的 likes:/dislikes:/votes:folder: 在整个过程中保持不变：
+     * 1. 设置 {@link VoteRedisProjector#REBUILD_RUN_KEY}，之后的投票由投影脚本同时写入影子键并标记为脏；
+     * 2. 分批把 MySQL 投票写入影子 Set 或位图（由 app.votes.redis-storage 决定），再写影子歌单快照；
+     * 3. 扫描线上键，把只存在于旧模型中的歌曲和用户也登记进待切换集合（切换时删除）；
+     * 4. 重读脏歌曲和脏用户，再按每块 {@link #SWAP_CHUNK_SIZE} 个 id 用 Lua 脚本 RENAME 影子键覆盖线上键，
+     *    同一首歌（或用户）的键在同一次脚本中切换，读请求不会看到单首歌的中间状态；单次脚本耗时有上限，不会长时间阻塞 Redis。
+     *    切换后的 id 记入已切换集合，投影脚本不再写它的影子键；仍在脏集合中的 id 跳过并在重读后重试，最后一轮强制切换；
+     *    全部歌曲切换完后逐个切换歌单快照，最后标记用户投票索引就绪。不同歌曲之间不保证同时切换。
+     */
     private void rebuildRedisVotes() {
-        deleteVoteKeys("likes:*");
-        deleteVoteKeys("dislikes:*");
-        List<SongVote> votes = songVoteRepository.findAll();
+        progress.start();
+        String runId = Long.toString(System.currentTimeMillis(), 36);
+        String shadow = VoteRedisProjector.shadowPrefix(runId);
+        boolean success = false;
+        try {
+            progress.phase("cleanup");
+            // 上次重建异常中断留下的影子键
+            deleteKeys(VoteRedisProjector.shadowPrefix("*") + "*");
+            redisTemplate.opsForValue().set(VoteRedisProjector.REBUILD_RUN_KEY, runId, Duration.ofHours(2));
+
+            progress.phase("votes");
+            Map<Long, long[]> countsBySong = writeShadowVotes(shadow);
+
+            progress.phase("snapshots");
+            writeShadowSnapshots(shadow, countsBySong);
+            writeShadowDigests(shadow, countsBySong);
+
+            progress.phase("stale");
+            // 两种存储的键都登记：切换 app.votes.redis-storage 后，另一种存储遗留的键在切换时一并删除
+            for (String pattern : List.of("likes:*", "dislikes:*", "vbits:likes:*", "vbits:dislikes:*", "votes:digest:*")) {
+                registerLiveIds(shadow + "songs", pattern);
+            }
+            registerLiveIds(shadow + "users", "votes:user:*");
+
+            progress.phase("swap");
+            swap(runId, shadow);
+            // 票数可能整体变化，让所有歌单 ETag 失效
+            folderVersions.resetAll();
+            success = true;
+            log.info("【投票同步任务】已从 MySQL 重建 {} 条 Redis 投票关系并切换到新键空间", progress.votesWritten());
+        } finally {
+            if (!success) {
+                taskLock.release(VoteRedisProjector.REBUILD_RUN_KEY, runId);
+                deleteKeys(shadow + "*");
+            }
+            progress.finish(success);
+        }
+    }
+
+    /**
+     * @return songId -> [likes, dislikes, 点赞用户哈希和, 点踩用户哈希和]，内存与歌曲数成正比，与投票总数无关
+     */
+    private Map<Long, long[]> writeShadowVotes(String shadow) {
+        Map<Long, long[]> countsBySong = new HashMap<>();
+        long afterId = 0;
+        while (true) {
+            List<Object[]> rows = songVoteRepository.findVoteTuplesAfter(afterId, PageRequest.of(0, BATCH_SIZE));
+            if (rows.isEmpty()) {
+                return countsBySong;
+            }
+            int size = rows.size();
+            long[] songIds = new long[size];
+            long[] userIds = new long[size];
+            int[] votes = new int[size];
+            for (int i = 0; i < size; i++) {
+                Object[] row = rows.get(i);
+                songIds[i] = (Long) row[1];
+                userIds[i] = (Long) row[2];
+                votes[i] = (Integer) row[3];
+            }
+            afterId = (Long) rows.getLast()[0];
+
+            writeVoteBatch(shadow, songIds, userIds, votes);
+            for (int i = 0; i < size; i++) {
+                long[] counts = countsBySong.computeIfAbsent(songIds[i], _ -> new long[4]);
+                int column = votes[i] > 0 ? 0 : 1;
+                counts[column]++;
+                counts[column + 2] += VoteRedisProjector.userHash(userIds[i]);
+            }
+            long batch = progress.batchWritten(size);
+            if (batch % PROGRESS_LOG_INTERVAL == 0) {
+                log.info("【投票同步任务】已写入 {} 条投票关系", progress.votesWritten());
+            }
+        }
+    }
+
+    private void writeVoteBatch(String shadow, long[] songIds, long[] userIds, int[] votes) {
         redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
             RedisSerializer<String> serializer = redisTemplate.getStringSerializer();
-            for (SongVote vote : votes) {
-                if (vote.getSongId() == null || vote.getUserId() == null) {
-                    continue;
+            byte[] songsKey = serializer.serialize(shadow + "songs");
+            byte[] usersKey = serializer.serialize(shadow + "users");
+            for (int i = 0; i < songIds.length; i++) {
+                String songId = Long.toString(songIds[i]);
+                String userId = Long.toString(userIds[i]);
+                redisProjector.addVoter(connection, shadow, songIds[i], votes[i] > 0, userIds[i]);
+                connection.hashCommands().hSet(serializer.serialize(shadow + VoteRedisProjector.userVotesKey(userIds[i])),
+                        serializer.serialize(songId), serializer.serialize(Integer.toString(votes[i])));
+                connection.setCommands().sAdd(songsKey, serializer.serialize(songId));
+                connection.setCommands().sAdd(usersKey, serializer.serialize(userId));
+            }
+            return null;
+        });
+    }
+
+    /**
+     * 按歌单写入影子票数快照 Hash（切换后即 {@link VoteRedisProjector#folderVotesKey}），带就绪标记
+     */
+    private void writeShadowSnapshots(String shadow, Map<Long, long[]> countsBySong) {
+        Map<String, Map<byte[], byte[]>> snapshots = new HashMap<>();
+        RedisSerializer<String> serializer = redisTemplate.getStringSerializer();
+        for (SongFolder folder : folderRegistry.all()) {
+            snapshots.put(folder.getFolderKey(), new HashMap<>());
+        }
+        for (Object[] row : songRepository.findAllSongFolderIds()) {
+            long[] counts = countsBySong.get((Long) row[0]);
+            SongFolder folder = folderRegistry.findById((Long) row[1]);
+            if (counts == null || folder == null) {
+                continue;
+            }
+            snapshots.get(folder.getFolderKey()).put(serializer.serialize(row[0].toString()),
+                    serializer.serialize(VoteRedisProjector.packCounts(counts[0], counts[1])));
+        }
+        for (Map.Entry<String, Map<byte[], byte[]>> entry : snapshots.entrySet()) {
+            byte[] key = serializer.serialize(shadow + "folder:" + entry.getKey());
+            // 每个 HSET 最多 BATCH_SIZE 个字段，避免单条命令过大
+            Map<byte[], byte[]> chunk = new HashMap<>();
+            for (Map.Entry<byte[], byte[]> field : entry.getValue().entrySet()) {
+                chunk.put(field.getKey(), field.getValue());
+                if (chunk.size() == BATCH_SIZE) {
+                    writeSnapshotChunk(key, chunk);
+                    chunk = new HashMap<>();
                 }
-                String key = (vote.getVoteType().name().equals("LIKE") ? "likes:" : "dislikes:") + vote.getSongId();
-                connection.setCommands().sAdd(serializer.serialize(key), serializer.serialize(vote.getUserId().toString()));
             }
+            chunk.put(serializer.serialize(VoteRedisProjector.FOLDER_VOTES_READY_FIELD), serializer.serialize("1"));
+            writeSnapshotChunk(key, chunk);
+        }
+        log.info("【投票同步任务】已写入 {} 个歌单的影子票数快照", snapshots.size());
+    }
+
+    private void writeShadowDigests(String shadow, Map<Long, long[]> countsBySong) {
+        List<Map.Entry<Long, long[]>> entries = new ArrayList<>(countsBySong.entrySet());
+        for (int from = 0; from < entries.size(); from += BATCH_SIZE) {
+            List<Map.Entry<Long, long[]>> chunk = entries.subList(from, Math.min(entries.size(), from + BATCH_SIZE));
+            redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+                RedisSerializer<String> serializer = redisTemplate.getStringSerializer();
+                for (Map.Entry<Long, long[]> entry : chunk) {
+                    long[] counts = entry.getValue();
+                    connection.hashCommands().hMSet(serializer.serialize(shadow + VoteRedisProjector.digestKey(entry.getKey())), Map.of(
+                            serializer.serialize("l"), serializer.serialize(Long.toString(counts[2])),
+                            serializer.serialize("d"), serializer.serialize(Long.toString(counts[3]))));
+                }
+                return null;
+            });
+        }
+    }
+
+    private void writeSnapshotChunk(byte[] key, Map<byte[], byte[]> chunk) {
+        redisTemplate.execute((RedisCallback<Object>) connection -> {
+            connection.hashCommands().hMSet(key, chunk);
             return null;
         });
-        log.info("【投票同步任务】已从 MySQL 重建 {} 条 Redis 投票关系", votes.size());
     }
 
-    private void deleteVoteKeys(String pattern) {
-        Set<String> keys = redisTemplate.execute((RedisCallback<Set<String>>) connection -> {
-            Set<String> result = new java.util.HashSet<>();
+    /**
+     * 线上已有投票键的歌曲（或用户）登记进待切换集合：切换时影子键不存在就删除线上键，清掉已不存在的投票
+     */
+    private void registerLiveIds(String setKey, String pattern) {
+        String prefix = pattern.substring(0, pattern.length() - 1);
+        redisTemplate.execute((RedisCallback<Object>) connection -> {
             RedisSerializer<String> serializer = redisTemplate.getStringSerializer();
-            try (var cursor = connection.scan(org.springframework.data.redis.core.ScanOptions.scanOptions()
-                    .match(pattern).count(500).build())) {
+            byte[] targetKey = serializer.serialize(setKey);
+            List<byte[]> batch = new ArrayList<>(DELETE_BATCH_SIZE);
+            try (var cursor = connection.scan(ScanOptions.scanOptions().match(pattern).count(DELETE_BATCH_SIZE).build())) {
                 while (cursor.hasNext()) {
-                    result.add(serializer.deserialize(cursor.next()));
+                    batch.add(serializer.serialize(serializer.deserialize(cursor.next()).substring(prefix.length())));
+                    if (batch.size() == DELETE_BATCH_SIZE) {
+                        connection.setCommands().sAdd(targetKey, batch.toArray(byte[][]::new));
+                        batch.clear();
+                    }
                 }
             } catch (Exception e) {
                 throw new IllegalStateException("Failed to scan Redis vote keys", e);
             }
-            return result;
+            if (!batch.isEmpty()) {
+                connection.setCommands().sAdd(targetKey, batch.toArray(byte[][]::new));
+            }
+            return null;
         });
-        if (keys != null && !keys.isEmpty()) {
-            redisTemplate.delete(keys);
+    }
+
+    private void swap(String runId, String shadow) {
+        SwapTarget songs = new SwapTarget(shadow + "dirty", shadow + "swapped", SONG_KEY_KINDS);
+        SwapTarget users = new SwapTarget(shadow + "dirty-users", shadow + "swapped-users", List.of("votes:user:"));
+        resyncAllDirty(shadow);
+        List<String> remainingSongs = swapAll(runId, shadow, shadow + "songs", songs);
+        List<String> remainingUsers = swapAll(runId, shadow, shadow + "users", users);
+        for (int attempt = 2; attempt <= MAX_SWAP_ATTEMPTS
+                && !(remainingSongs.isEmpty() && remainingUsers.isEmpty()); attempt++) {
+            // 最后一次不再等待脏标记清空：刚重读过的影子键只可能漏掉重读与切换之间的投票，由增量对账修复
+            boolean force = attempt == MAX_SWAP_ATTEMPTS;
+            if (force) {
+                log.warn("【投票同步任务】{} 首歌曲、{} 个用户在切换期间持续变化，强制切换",
+                        remainingSongs.size(), remainingUsers.size());
+            }
+            resyncAllDirty(shadow);
+            remainingSongs = swapChunk(runId, shadow, songs, remainingSongs, force);
+            remainingUsers = swapChunk(runId, shadow, users, remainingUsers, force);
+        }
+        // 歌单快照最后切换：此时所有歌曲都已切换，投影脚本按线上计数维护影子快照，每个歌单一个键，逐个切换
+        SwapTarget folders = new SwapTarget(shadow + "dirty-folders", shadow + "swapped-folders", List.of("folder:"));
+        for (SongFolder folder : folderRegistry.all()) {
+            String folderKey = folder.getFolderKey();
+            redisTemplate.execute(SWAP_CHUNK_SCRIPT,
+                    List.of(VoteRedisProjector.REBUILD_RUN_KEY, folders.dirtyKey(), folders.swappedKey(),
+                            shadow + "folder:" + folderKey, VoteRedisProjector.folderVotesKey(folderKey)),
+                    runId, "1", "1", folderKey);
+        }
+        redisTemplate.opsForValue().set(VoteRedisProjector.USER_VOTES_READY_KEY, "1");
+        // 先结束双写，再清理影子键
+        taskLock.release(VoteRedisProjector.REBUILD_RUN_KEY, runId);
+        deleteKeys(shadow + "*");
+    }
+
+    /**
+     * 一类待切换的 id：脏集合、已切换集合，以及每个 id 需要切换的键前缀（线上键 = 前缀 + id，影子键再加影子前缀）
+     */
+    private record SwapTarget(String dirtyKey, String swappedKey, List<String> kinds) {
+    }
+
+    /**
+     * 用 SSCAN 分块切换集合中的全部 id
+     *
+     * @return 因仍在脏集合中而跳过的 id
+     */
+    private List<String> swapAll(String runId, String shadow, String idsKey, SwapTarget target) {
+        List<String> skipped = new ArrayList<>();
+        List<String> chunk = new ArrayList<>(SWAP_CHUNK_SIZE);
+        try (var cursor = redisTemplate.opsForSet().scan(idsKey,
+                ScanOptions.scanOptions().count(SWAP_CHUNK_SIZE).build())) {
+            while (cursor.hasNext()) {
+                chunk.add(cursor.next());
+                if (chunk.size() == SWAP_CHUNK_SIZE) {
+                    skipped.addAll(swapChunk(runId, shadow, target, chunk, false));
+                    chunk.clear();
+                }
+            }
+        }
+        if (!chunk.isEmpty()) {
+            skipped.addAll(swapChunk(runId, shadow, target, chunk, false));
+        }
+        return skipped;
+    }
+
+    // SSCAN 可能重复返回同一 id，重复切换时影子键已不存在，会误删刚切换的线上键，因此先去重
+    private List<String> swapChunk(String runId, String shadow, SwapTarget target, List<String> ids, boolean force) {
+        List<String> skipped = new ArrayList<>();
+        List<String> unique = List.copyOf(new LinkedHashSet<>(ids));
+        List<String> kinds = target.kinds();
+        for (int from = 0; from < unique.size(); from += SWAP_CHUNK_SIZE) {
+            List<String> chunk = unique.subList(from, Math.min(unique.size(), from + SWAP_CHUNK_SIZE));
+            List<String> keys = new ArrayList<>(3 + chunk.size() * kinds.size() * 2);
+            keys.add(VoteRedisProjector.REBUILD_RUN_KEY);
+            keys.add(target.dirtyKey());
+            keys.add(target.swappedKey());
+            Object[] args = new Object[chunk.size() + 3];
+            args[0] = runId;
+            args[1] = Integer.toString(kinds.size());
+            args[2] = force ? "1" : "0";
+            for (int i = 0; i < chunk.size(); i++) {
+                String id = chunk.get(i);
+                for (String kind : kinds) {
+                    keys.add(shadow + kind + id);
+                    keys.add(kind + id);
+                }
+                args[i + 3] = id;
+            }
+            List<?> result = redisTemplate.execute(SWAP_CHUNK_SCRIPT, keys, args);
+            if (result != null) {
+                result.forEach(id -> skipped.add(id.toString()));
+            }
+        }
+        return skipped;
+    }
+
+    private void resyncAllDirty(String shadow) {
+        resyncDirty(shadow + "dirty", songId -> resyncSong(shadow, songId));
+        resyncDirty(shadow + "dirty-users", userId -> redisProjector.rewriteUser(shadow, userId,
+                songVoteRepository.findVoteTuplesByUserId(userId)));
+    }
+
+    /**
+     * 重建期间被投票改动过的歌曲（或用户）：直接从 MySQL 重读，覆盖对应的影子键
+     */
+    private void resyncDirty(String dirtyKey, Consumer<Long> resync) {
+        String processingKey = dirtyKey + ":processing";
+        for (int round = 0; round < MAX_SWAP_ATTEMPTS && Boolean.TRUE.equals(redisTemplate.hasKey(dirtyKey)); round++) {
+            redisTemplate.rename(dirtyKey, processingKey);
+            Set<String> ids = redisTemplate.opsForSet().members(processingKey);
+            if (ids != null) {
+                for (String id : ids) {
+                    resync.accept(Long.valueOf(id));
+                }
+            }
+            redisTemplate.delete(processingKey);
         }
     }
 
-}
\ No newline at end of file
+    private void resyncSong(String shadow, Long songId) {
+        String folderKey = songService.findFolderKey(songId);
+        redisProjector.rewriteSong(shadow, folderKey == null ? null : shadow + "folder:" + folderKey,
+                songId, songVoteRepository.findVoteTuplesBySongId(songId));
+    }
+
+    // 边扫描边删除，每批最多 500 个键，不在内存中收集全部键名
+    private void deleteKeys(String pattern) {
+        redisTemplate.execute((RedisCallback<Object>) connection -> {
+            List<byte[]> batch = new ArrayList<>(DELETE_BATCH_SIZE);
+            try (var cursor = connection.scan(ScanOptions.scanOptions().match(pattern).count(DELETE_BATCH_SIZE).build())) {
+                while (cursor.hasNext()) {
+                    batch.add(cursor.next());
+                    if (batch.size() == DELETE_BATCH_SIZE) {
+                        connection.keyCommands().unlink(batch.toArray(byte[][]::new));
+                        batch.clear();
+                    }
+                }
+            } catch (Exception e) {
+                throw new IllegalStateException("Failed to scan Redis vote keys", e);
+            }
+            if (!batch.isEmpty()) {
+                connection.keyCommands().unlink(batch.toArray(byte[][]::new));
+            }
+            return null;
+        });
+    }
+
+}
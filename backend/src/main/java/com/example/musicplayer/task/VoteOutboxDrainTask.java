@@ -0,0 +1,43 @@
+package com.example.musicplayer.task;
+
+import com.example.musicplayer.service.RedisTaskLock;
+import com.example.musicplayer.service.VoteOutboxRelay;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class VoteOutboxDrainTask {
+
+    private final VoteOutboxRelay outboxRelay;
+    private final RedisTaskLock taskLock;
+
+    private static final String LOCK_KEY = "music:task-lock:vote-outbox";
+
+    /**
+     * 把即时投影失败的投票变更批量重放到 Redis
+     */
+    @Scheduled(fixedDelayString = "${app.vote-outbox.drain-seconds:5}", timeUnit = TimeUnit.SECONDS)
+    public void drain() {
+        String token = taskLock.tryAcquire(LOCK_KEY, Duration.ofMinutes(5));
+        if (token == null) {
+            return;
+        }
+        try {
+            int replayed = outboxRelay.drain();
+            if (replayed > 0) {
+                log.info("【投票发件箱】已重放 {} 条积压的投票变更", replayed);
+            }
+        } catch (Exception e) {
+            log.error("【投票发件箱】重放失败，下个周期重试", e);
+        } finally {
+            taskLock.release(LOCK_KEY, token);
+        }
+    }
+}
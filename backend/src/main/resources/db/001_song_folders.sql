@@ -0,0 +1,31 @@
+-- 歌单注册表 + songs.folder_id
+-- 项目未启用自动建表 (ddl-auto=none, spring.sql.init.mode=never)，上线前请手动在 MySQL 执行。
+-- 注册表为空时应用会自动写入初始歌单；folder_id 也会在下一次 OSS 同步时回填，下面的 UPDATE 只是提前完成回填。
+
+CREATE TABLE IF NOT EXISTS song_folders
+(
+    id           BIGINT       NOT NULL AUTO_INCREMENT PRIMARY KEY,
+    folder_key   VARCHAR(64)  NOT NULL,
+    display_name VARCHAR(255) NOT NULL,
+    created_at   DATETIME(6)  NULL,
+    CONSTRAINT uk_song_folders_key UNIQUE (folder_key)
+);
+
+INSERT IGNORE INTO song_folders (folder_key, display_name, created_at)
+VALUES ('ha_ji_mi', '哈基米', NOW(6)),
+       ('dian_gun', '溜冰场', NOW(6)),
+       ('da_si_ma', '大司马', NOW(6)),
+       ('ding_zhen', '丁真', NOW(6)),
+       ('dxl', '东洋雪莲', NOW(6)),
+       ('DDF', '哲学', NOW(6)),
+       ('true_music', '真正的音乐', NOW(6));
+
+ALTER TABLE songs
+    ADD COLUMN folder_id BIGINT NULL AFTER object_key,
+    ADD INDEX idx_songs_folder_deleted_id (folder_id, is_deleted, id),
+    ADD INDEX idx_songs_folder_id (folder_id, id);
+
+UPDATE songs s
+    JOIN song_folders f ON s.object_key LIKE CONCAT('music/', f.display_name, '/%')
+SET s.folder_id = f.id
+WHERE s.folder_id IS NULL;
@@ -0,0 +1,13 @@
+-- 投票投影发件箱：与 song_votes 的变更在同一事务中写入，由 VoteOutboxRelay 批量投影到 Redis 后删除
+-- 项目未启用自动建表 (ddl-auto=none, spring.sql.init.mode=never)，上线前请手动在 MySQL 执行。
+
+CREATE TABLE IF NOT EXISTS vote_outbox
+(
+    id            BIGINT      NOT NULL AUTO_INCREMENT PRIMARY KEY,
+    song_id       BIGINT      NOT NULL,
+    user_id       BIGINT      NOT NULL,
+    vote          TINYINT     NULL COMMENT '变更后的投票：1 like, -1 dislike, NULL 取消',
+    previous_vote TINYINT     NULL COMMENT '变更前的投票',
+    created_at    DATETIME(6) NOT NULL,
+    INDEX idx_vote_outbox_user_song (user_id, song_id, id)
+);
@@ -0,0 +1,8 @@
+-- 投票对账（VoteReconciler）使用的索引
+-- 项目未启用自动建表 (ddl-auto=none, spring.sql.init.mode=never)，上线前请手动在 MySQL 执行。
+
+ALTER TABLE song_votes
+    -- 按歌曲聚合 COUNT / SUM(CRC32(user_id)) 及按歌曲重读投票，覆盖索引无需回表
+    ADD INDEX idx_song_votes_song_vote_user (song_id, vote, user_id),
+    -- 查找上次对账后有变更的歌曲
+    ADD INDEX idx_song_votes_updated_song (updated_at, song_id);
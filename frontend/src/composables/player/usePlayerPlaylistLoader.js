@@ -54,7 +54,8 @@ export function usePlayerPlaylistLoader({
 
     async function fetchSongList(folder) {
         try {
-            const query = new URLSearchParams({ folder }).toString()
+            // withUrl=false：列表不带签名链接，播放时走 /songs/stream/{id} 按需签名
+            const query = new URLSearchParams({ folder, withUrl: 'false' }).toString()
             const res = await fetch(`${PUBLIC_API_BASE}/songs/get?${query}`)
             const data = await res.json()
             playlist.value = data || []
@@ -0,0 +1,46 @@
+import { ref } from 'vue'
+import api from '@/services/auth'
+
+// 与后端 VoteService.MAX_BATCH_SONGS 一致
+const MAX_BATCH_SONGS = 200
+
+/**
+ * 整个歌单的票数与当前用户的投票：切换歌单时按每批 200 首调用批量接口，
+ * 播放器切歌时直接取用，不再每首歌单独请求一次
+ */
+export function useSongVotes() {
+    // songId -> { likes, dislikes, userVote }
+    const songVotes = ref({})
+    let generation = 0
+
+    async function loadVotes(songIds) {
+        // 请求期间又切换了歌单时，丢弃旧歌单的结果
+        const current = ++generation
+        const loaded = {}
+        try {
+            for (let from = 0; from < songIds.length; from += MAX_BATCH_SONGS) {
+                const ids = songIds.slice(from, from + MAX_BATCH_SONGS)
+                const res = await api.get('/public/songs/votes', { params: { ids: ids.join(',') } })
+                Object.assign(loaded, res.data)
+            }
+        } catch (err) {
+            // 失败时保留已取回的部分，其余歌曲由投票组件单独请求
+            console.error('批量获取投票数失败', err)
+        }
+        if (current === generation) {
+            songVotes.value = loaded
+        }
+    }
+
+    function updateVotes(songId, patch) {
+        const current = songVotes.value[songId]
+        if (!current) return
+        songVotes.value[songId] = { ...current, ...patch }
+    }
+
+    return {
+        songVotes,
+        loadVotes,
+        updateVotes
+    }
+}
@@ -0,0 +1,91 @@
+import os
+import platform
+import random
+import statistics
+import time
+
+import redis
+
+# 对比歌单票数修正的两种读法：
+#   旧：每首歌 SCARD likes:<id> + SCARD dislikes:<id>，一个 pipeline 发 2N 条命令
+#   新：HGETALL votes:folder:<key>，1 条命令
+# 使用独立的 key 前缀，不会碰到线上数据；建议指向本地或测试 Redis
+# 最后输出的表格行可直接追加到 documents/VOTE_AND_RANKING_IMPLEMENTATION.md 的"歌单票数修正基准"表
+
+HOST = "localhost"
+PORT = 6379
+SONGS = 2000        # 单个歌单的歌曲数
+USERS = 500         # 每首歌随机投票的用户池
+ROUNDS = 200        # 每种读法重复次数
+PREFIX = "bench:"
+
+r = redis.Redis(host=HOST, port=PORT, decode_responses=True)
+
+
+def seed():
+    folder_key = PREFIX + "votes:folder:bench"
+    pipe = r.pipeline(transaction=False)
+    for song_id in range(1, SONGS + 1):
+        likes = random.sample(range(USERS), random.randint(0, 30))
+        dislikes = random.sample(range(USERS), random.randint(0, 10))
+        if likes:
+            pipe.sadd(f"{PREFIX}likes:{song_id}", *likes)
+        if dislikes:
+            pipe.sadd(f"{PREFIX}dislikes:{song_id}", *dislikes)
+        pipe.hset(folder_key, song_id, f"{len(likes)}:{len(dislikes)}")
+    pipe.hset(folder_key, "_ready", "1")
+    pipe.execute()
+    return folder_key
+
+
+def cleanup():
+    keys = list(r.scan_iter(PREFIX + "*", count=1000))
+    for i in range(0, len(keys), 500):
+        r.delete(*keys[i:i + 500])
+
+
+def scard_pipeline():
+    pipe = r.pipeline(transaction=False)
+    for song_id in range(1, SONGS + 1):
+        pipe.scard(f"{PREFIX}likes:{song_id}")
+        pipe.scard(f"{PREFIX}dislikes:{song_id}")
+    return pipe.execute()
+
+
+def hgetall(folder_key):
+    return r.hgetall(folder_key)
+
+
+def environment():
+    server = r.info("server")
+    return (f"客户端 {platform.system()} {platform.machine()} {os.cpu_count()} 核 / "
+            f"Redis {server['redis_version']} ({server['os']})")
+
+
+def measure(name, fn, commands):
+    before = r.info("stats")["total_commands_processed"]
+    samples = []
+    for _ in range(ROUNDS):
+        start = time.perf_counter()
+        fn()
+        samples.append((time.perf_counter() - start) * 1000)
+    # INFO 本身也计一条命令
+    processed = r.info("stats")["total_commands_processed"] - before - 1
+    samples.sort()
+    p50 = statistics.median(samples)
+    p95 = samples[int(len(samples) * 0.95) - 1]
+    print(f"{name:<16} 命令数/次={commands:<6} 服务端实测={processed / ROUNDS:<8.1f} "
+          f"p50={p50:.2f}ms p95={p95:.2f}ms")
+    return p50, p95
+
+
+if __name__ == "__main__":
+    cleanup()
+    folder = seed()
+    try:
+        old = measure("SCARD pipeline", scard_pipeline, SONGS * 2)
+        new = measure("HGETALL", lambda: hgetall(folder), 1)
+        print(f"| {time.strftime('%Y-%m-%d')} | {environment()} | {SONGS} 首 × {ROUNDS} 轮 "
+              f"| {old[0]:.2f} / {old[1]:.2f} | {new[0]:.2f} / {new[1]:.2f} |")
+    finally:
+        cleanup()
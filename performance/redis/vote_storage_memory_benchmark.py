@@ -0,0 +1,98 @@
+import os
+import platform
+import random
+import time
+
+import redis
+
+# 对比投票读模型两种存储（app.votes.redis-storage）的内存占用：
+#   set：   likes:<songId> / dislikes:<songId>，成员为 userId（≤512 个整数时为 intset，之后转为哈希表）
+#   bitmap：vbits:likes:<songId> / vbits:dislikes:<songId>，第 userId 位置 1，长度取决于最大的投票 userId
+# 每首歌的票数服从长尾分布：大部分歌曲票数很少，少数热门歌曲票数很多。
+# 使用独立的 key 前缀，不会碰到线上数据；建议指向本地或测试 Redis，完整规模需要数百 MB 内存
+# 最后输出的表格行可直接追加到 documents/VOTE_AND_RANKING_IMPLEMENTATION.md 的"投票存储内存实测"表
+
+HOST = "localhost"
+PORT = 6379
+USERS = 100_000
+SONGS = 10_000
+MEAN_LIKES = 50         # 每首歌平均点赞数；调大可观察热门歌单下两种存储的交叉点
+DISLIKE_RATIO = 0.2     # 点踩数相对点赞数的比例
+PREFIX = "bench:"
+
+r = redis.Redis(host=HOST, port=PORT)
+
+
+def vote_count(mean):
+    # 帕累托分布，alpha=1.5 时均值为 3 倍 scale
+    return min(USERS, int(random.paretovariate(1.5) * mean / 3))
+
+
+def seed():
+    total = 0
+    for song_id in range(1, SONGS + 1):
+        likes = random.sample(range(1, USERS + 1), vote_count(MEAN_LIKES))
+        dislikes = random.sample(range(1, USERS + 1), vote_count(MEAN_LIKES * DISLIKE_RATIO))
+        total += len(likes) + len(dislikes)
+        pipe = r.pipeline(transaction=False)
+        for kind, users in (("likes", likes), ("dislikes", dislikes)):
+            if not users:
+                continue
+            pipe.sadd(f"{PREFIX}{kind}:{song_id}", *users)
+            bits_key = f"{PREFIX}vbits:{kind}:{song_id}"
+            for user_id in users:
+                pipe.setbit(bits_key, user_id, 1)
+        pipe.execute()
+    return total
+
+
+def cleanup():
+    keys = list(r.scan_iter(PREFIX + "*", count=1000))
+    for i in range(0, len(keys), 500):
+        r.delete(*keys[i:i + 500])
+
+
+def memory(pattern):
+    keys = 0
+    used = 0
+    encodings = {}
+    for key in r.scan_iter(pattern, count=1000):
+        keys += 1
+        used += r.memory_usage(key, samples=0) or 0
+        encoding = r.object("encoding", key)
+        encodings[encoding] = encodings.get(encoding, 0) + 1
+    return keys, used, encodings
+
+
+def report(name, patterns, votes):
+    keys = 0
+    used = 0
+    encodings = {}
+    for pattern in patterns:
+        k, u, e = memory(pattern)
+        keys += k
+        used += u
+        for encoding, count in e.items():
+            encodings[encoding] = encodings.get(encoding, 0) + count
+    print(f"{name:<8} 键数={keys:<7} 内存={used / 1024 / 1024:>8.1f}MB "
+          f"每票={used / max(1, votes):>6.1f}B 编码={encodings}")
+    return f"{used / 1024 / 1024:.1f}MB / {used / max(1, votes):.1f}B"
+
+
+def environment():
+    server = r.info("server")
+    return (f"客户端 {platform.system()} {platform.machine()} {os.cpu_count()} 核 / "
+            f"Redis {server['redis_version']} ({server['os']})")
+
+
+if __name__ == "__main__":
+    cleanup()
+    try:
+        votes = seed()
+        print(f"{USERS} 用户 × {SONGS} 首歌，共 {votes} 票")
+        set_used = report("set", [PREFIX + "likes:*", PREFIX + "dislikes:*"], votes)
+        bitmap_used = report("bitmap", [PREFIX + "vbits:likes:*", PREFIX + "vbits:dislikes:*"], votes)
+        print(f"| {time.strftime('%Y-%m-%d')} | {environment()} | {USERS} 用户 × {SONGS} 首，平均 {MEAN_LIKES} 赞，"
+              f"共 {votes} 票 | {set_used} | {bitmap_used} |")
+    finally:
+        cleanup()